@@ -0,0 +1,161 @@
+package com.booking.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class AiClientConfig {
+    
+    @Value("${ai.client.max-connections:64}")
+    private int maxConnections;
+    
+    @Value("${ai.client.max-connections-per-route:32}")
+    private int maxConnectionsPerRoute;
+    
+    @Value("${ai.client.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+    
+    @Value("${ai.client.read-timeout-ms:30000}")
+    private long readTimeoutMs;
+    
+    @Value("${ai.client.total-timeout-ms:45000}")
+    private long totalTimeoutMs;
+    
+    @Value("${ai.client.lease-timeout-ms:1000}")
+    private long leaseTimeoutMs;
+    
+    @Value("${ai.client.idle-eviction-seconds:30}")
+    private long idleEvictionSeconds;
+    
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager aiConnectionManager(MeterRegistry meterRegistry) {
+        Timer leaseTimer = Timer.builder("ai.client.pool.lease")
+                .description("Time spent waiting to lease a pooled connection to the AI backend")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager() {
+            @Override
+            public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+                LeaseRequest delegate = super.lease(id, route, requestTimeout, state);
+                long start = System.nanoTime();
+                return new LeaseRequest() {
+                    @Override
+                    public ConnectionEndpoint get(Timeout timeout)
+                            throws InterruptedException, ExecutionException, TimeoutException {
+                        try {
+                            return delegate.get(timeout);
+                        } finally {
+                            leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                    }
+                    
+                    @Override
+                    public boolean cancel() {
+                        return delegate.cancel();
+                    }
+                };
+            }
+        };
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build());
+        
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "ai-backend").bindTo(meterRegistry);
+        return connectionManager;
+    }
+    
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient aiHttpClient(PoolingHttpClientConnectionManager aiConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(aiConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(leaseTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictionSeconds))
+                .build();
+    }
+    
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledThreadPoolExecutor aiDeadlineScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "ai-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+    
+    /**
+     * Keep-alive, pooled client for the Python AI backend. A hung worker can hold a request
+     * for at most the read timeout between bytes, and every request is aborted once the total
+     * timeout has passed, so a backend trickling a slow answer cannot hold the calling thread
+     * and its connection indefinitely. Callers waiting on an exhausted pool give up after the
+     * lease timeout instead of queueing forever.
+     */
+    @Bean(name = "aiRestTemplate")
+    public RestTemplate aiRestTemplate(RestTemplateBuilder builder, CloseableHttpClient aiHttpClient,
+                                       ScheduledThreadPoolExecutor aiDeadlineScheduler,
+                                       MeterRegistry meterRegistry) {
+        AtomicInteger inFlight = new AtomicInteger();
+        Gauge.builder("ai.client.requests.in-flight", inFlight, AtomicInteger::get)
+                .description("Requests to the AI backend currently awaiting a response")
+                .register(meterRegistry);
+        
+        ClientHttpRequestInterceptor inFlightTracker = (request, body, execution) -> {
+            inFlight.incrementAndGet();
+            try {
+                return execution.execute(request, body);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        };
+        
+        return builder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(aiHttpClient) {
+                    @Override
+                    protected void postProcessHttpRequest(ClassicHttpRequest request) {
+                        // Cancelling a request that has already completed is a no-op
+                        if (request instanceof Cancellable cancellable) {
+                            aiDeadlineScheduler.schedule(cancellable::cancel, totalTimeoutMs, TimeUnit.MILLISECONDS);
+                        }
+                    }
+                })
+                .additionalInterceptors(inFlightTracker)
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.booking.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+    
+    @Value("${ai.executor.core-size:8}")
+    private int coreSize;
+    
+    @Value("${ai.executor.max-size:32}")
+    private int maxSize;
+    
+    @Value("${ai.executor.queue-capacity:200}")
+    private int queueCapacity;
+    
+    @Value("${ai.executor.virtual-threads:false}")
+    private boolean virtualThreads;
+    
+    @Value("${chat.dispatch.threads:4}")
+    private int chatDispatchThreads;
+    
+    @Value("${scheduling.pool-size:2}")
+    private int schedulingPoolSize;
+    
+    @Value("${mvc.executor.core-size:4}")
+    private int mvcCoreSize;
+    
+    @Value("${mvc.executor.max-size:16}")
+    private int mvcMaxSize;
+    
+    @Value("${mvc.executor.queue-capacity:50}")
+    private int mvcQueueCapacity;
+    
+    /**
+     * Executor for calls to the AI backend, kept apart from the servlet and JDBC pools so a
+     * slow AI response never pins a Tomcat thread or a database connection. Work beyond the
+     * queue capacity is rejected rather than queued without bound.
+     */
+    @Bean(name = "aiExecutor")
+    public AsyncTaskExecutor aiExecutor() {
+        if (virtualThreads) {
+            // Requires a JDK 21+ runtime; fails fast at startup otherwise
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ai-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(maxSize);
+            return executor;
+        }
+        
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ai-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Executor that starts the next queued message of a chat session once the previous one has
+     * been answered, so that work never runs on whichever thread completed the previous answer.
+     * Its tasks are short and already bounded per session, so the queue is unbounded: a rejected
+     * hand-off would leave the session stuck.
+     */
+    @Bean(name = "chatDispatchExecutor")
+    public AsyncTaskExecutor chatDispatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(chatDispatchThreads);
+        executor.setMaxPoolSize(chatDispatchThreads);
+        executor.setThreadNamePrefix("chat-dispatch-");
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Executor for Spring MVC async work such as streaming response bodies. Declaring
+     * {@code aiExecutor} switches off Boot's default task executor, which MVC would otherwise use.
+     */
+    @Bean(name = "mvcTaskExecutor")
+    public AsyncTaskExecutor mvcTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(mvcCoreSize);
+        executor.setMaxPoolSize(mvcMaxSize);
+        executor.setQueueCapacity(mvcQueueCapacity);
+        executor.setThreadNamePrefix("mvc-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Scheduler for {@code @Scheduled} jobs. The WebSocket broker declares its own
+     * {@code messageBrokerTaskScheduler}, which switches off Boot's default scheduler; without a
+     * bean named {@code taskScheduler} the jobs would run on the broker's heartbeat thread.
+     */
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(schedulingPoolSize);
+        scheduler.setThreadNamePrefix("scheduling-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        return scheduler;
+    }
+    
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(mvcTaskExecutor());
+    }
+}
@@ -0,0 +1,60 @@
+package com.booking.config;
+
+import com.booking.security.ChatSubscriptionInterceptor;
+import com.booking.security.JwtHandshakeInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+/**
+ * STOMP over WebSocket at {@code /ws/chat}, served by the in-process simple broker. Clients
+ * authenticate once at the handshake and subscribe to {@code /topic/chat/{reportId}}; admins
+ * may also subscribe to {@code /topic/chat-escalations}.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    
+    @Autowired
+    private JwtHandshakeInterceptor jwtHandshakeInterceptor;
+    
+    @Autowired
+    private ChatSubscriptionInterceptor chatSubscriptionInterceptor;
+    
+    @Autowired
+    @Lazy
+    @Qualifier("messageBrokerTaskScheduler")
+    private TaskScheduler messageBrokerTaskScheduler;
+    
+    @Value("${chat.websocket.heartbeat-ms:10000}")
+    private long heartbeatMs;
+    
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws/chat")
+                .setAllowedOriginPatterns("*")
+                .setHandshakeHandler(jwtHandshakeInterceptor.handshakeHandler())
+                .addInterceptors(jwtHandshakeInterceptor);
+    }
+    
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        // Heartbeats let both sides drop connections that died without a close frame
+        registry.enableSimpleBroker("/topic")
+                .setHeartbeatValue(new long[] {heartbeatMs, heartbeatMs})
+                .setTaskScheduler(messageBrokerTaskScheduler);
+    }
+    
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(chatSubscriptionInterceptor);
+    }
+}
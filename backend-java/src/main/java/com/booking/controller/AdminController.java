@@ -0,0 +1,43 @@
+package com.booking.controller;
+
+import com.booking.payload.response.MessageResponse;
+import com.booking.service.AiResponseCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+    
+    @Autowired
+    private AiResponseCache aiResponseCache;
+    
+    @GetMapping("/ai-cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getAiCacheStats() {
+        CacheStats stats = aiResponseCache.stats();
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("size", aiResponseCache.size());
+        response.put("hitCount", stats.hitCount());
+        response.put("missCount", stats.missCount());
+        response.put("hitRate", stats.hitRate());
+        response.put("evictionCount", stats.evictionCount());
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @DeleteMapping("/ai-cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> flushAiCache() {
+        aiResponseCache.invalidateAll();
+        return ResponseEntity.ok(new MessageResponse("AI response cache flushed"));
+    }
+}
@@ -7,6 +7,7 @@ import com.booking.payload.request.SignupRequest;
 import com.booking.payload.response.JwtResponse;
 import com.booking.payload.response.MessageResponse;
 import com.booking.security.JwtUtils;
+import com.booking.security.TokenRevocationList;
 import com.booking.security.UserPrincipal;
 import com.booking.service.UserService;
 import jakarta.validation.Valid;
@@ -35,6 +36,9 @@ public class AuthController {
     @Autowired
     JwtUtils jwtUtils;
     
+    @Autowired
+    TokenRevocationList tokenRevocationList;
+    
     @PostMapping("/signin")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
         Authentication authentication = authenticationManager.authenticate(
@@ -85,7 +89,11 @@ public class AuthController {
     }
     
     @PostMapping("/signout")
-    public ResponseEntity<?> logoutUser() {
+    public ResponseEntity<?> logoutUser(@RequestHeader(value = "Authorization", required = false) String authorization) {
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            tokenRevocationList.revoke(authorization.substring(7));
+        }
+        
         SecurityContextHolder.clearContext();
         return ResponseEntity.ok(new MessageResponse("User signed out successfully!"));
     }
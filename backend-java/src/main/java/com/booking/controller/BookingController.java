@@ -4,18 +4,31 @@ import com.booking.entity.Booking;
 import com.booking.entity.BookingStatus;
 import com.booking.entity.User;
 import com.booking.payload.request.BookingRequest;
+import com.booking.payload.request.BulkBookingRequest;
+import com.booking.payload.request.PageCursor;
 import com.booking.payload.response.BookingResponse;
+import com.booking.payload.response.CursorPageResponse;
+import com.booking.payload.response.FreeSlotResponse;
+import com.booking.repository.ListingVersion;
 import com.booking.security.UserPrincipal;
+import com.booking.service.BookingExportService;
 import com.booking.service.BookingService;
 import com.booking.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -31,6 +44,14 @@ public class BookingController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private BookingExportService bookingExportService;
+    
+    private static final int MAX_PAGE_SIZE = 200;
+    
+    // Cap for the unpaginated listing, which clients should replace with /my-bookings/page
+    private static final int MAX_LISTING_SIZE = 1000;
+    
     @PostMapping("/create")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
     public ResponseEntity<?> createBooking(@Valid @RequestBody BookingRequest bookingRequest, 
@@ -58,9 +79,37 @@ public class BookingController {
         }
     }
     
-    @GetMapping("/my-bookings")
+    @PostMapping("/hold")
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
+    public ResponseEntity<?> createHold(@Valid @RequestBody BookingRequest bookingRequest, 
+                                        Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            User user = userService.findById(userPrincipal.getId()).orElse(null);
+            
+            if (user == null) {
+                return ResponseEntity.badRequest().body("User not found");
+            }
+            
+            Booking booking = bookingService.createHold(
+                user,
+                bookingRequest.getBookingDateTime(),
+                bookingRequest.getDurationMinutes(),
+                bookingRequest.getServiceName(),
+                bookingRequest.getServiceDescription(),
+                bookingRequest.getPrice()
+            );
+            
+            return ResponseEntity.ok(new BookingResponse(booking));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error holding booking slot: " + e.getMessage());
+        }
+    }
+    
+    @PostMapping("/bulk")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
-    public ResponseEntity<?> getMyBookings(Authentication authentication) {
+    public ResponseEntity<?> createBookings(@Valid @RequestBody BulkBookingRequest bulkBookingRequest,
+                                            Authentication authentication) {
         try {
             UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
             User user = userService.findById(userPrincipal.getId()).orElse(null);
@@ -69,17 +118,102 @@ public class BookingController {
                 return ResponseEntity.badRequest().body("User not found");
             }
             
-            List<Booking> bookings = bookingService.getUserBookings(user);
+            List<Booking> bookings = bookingService.createBookings(user, bulkBookingRequest.getBookings());
             List<BookingResponse> bookingResponses = bookings.stream()
                     .map(BookingResponse::new)
                     .collect(Collectors.toList());
             
             return ResponseEntity.ok(bookingResponses);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error creating bookings: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * @deprecated returns at most the {@value #MAX_LISTING_SIZE} latest bookings; use
+     * {@code /my-bookings/page}
+     */
+    @Deprecated
+    @GetMapping("/my-bookings")
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
+    public ResponseEntity<?> getMyBookings(Authentication authentication, WebRequest webRequest) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            
+            // Answer conditional polls from one aggregate query, before loading anything
+            ListingVersion version = bookingService.getUserBookingsVersion(userPrincipal.getId());
+            if (webRequest.checkNotModified(version.toETag("bookings"), version.lastModifiedMillis())) {
+                return null;
+            }
+            
+            List<BookingResponse> bookingResponses = bookingService.getUserBookingsPage(
+                    userPrincipal.getId(), null, MAX_LISTING_SIZE);
+            
+            return ResponseEntity.ok()
+                    .header("Deprecation", "true")
+                    .header(HttpHeaders.LINK, "<my-bookings/page>; rel=\"successor-version\"")
+                    .body(bookingResponses);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error retrieving bookings: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping("/my-bookings/changes")
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
+    public ResponseEntity<?> getMyBookingChanges(@RequestParam(required = false)
+                                                 @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+                                                 Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            return ResponseEntity.ok(bookingService.getUserBookingChanges(userPrincipal.getId(), since));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error retrieving booking changes: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping("/my-bookings/page")
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
+    public ResponseEntity<?> getMyBookingsPage(@RequestParam(required = false) String cursor,
+                                               @RequestParam(defaultValue = "50") int limit,
+                                               Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            PageCursor pageCursor = cursor != null ? PageCursor.decode(cursor) : null;
+            
+            // Fetch one extra row to learn whether another page follows
+            List<BookingResponse> bookings = bookingService.getUserBookingsPage(
+                    userPrincipal.getId(), pageCursor, pageSize + 1);
+            String nextCursor = null;
+            if (bookings.size() > pageSize) {
+                bookings = bookings.subList(0, pageSize);
+                BookingResponse last = bookings.get(pageSize - 1);
+                nextCursor = new PageCursor(last.getBookingDateTime(), last.getId()).encode();
+            }
+            
+            return ResponseEntity.ok(new CursorPageResponse<>(bookings, nextCursor));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error retrieving bookings: " + e.getMessage());
         }
     }
     
+    @GetMapping("/availability")
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
+    public ResponseEntity<?> getAvailability(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                             @RequestParam(defaultValue = "5") int minDurationMinutes) {
+        try {
+            if (to.isBefore(from)) {
+                return ResponseEntity.badRequest().body("'to' must not be before 'from'");
+            }
+            
+            List<FreeSlotResponse> freeSlots = bookingService.getFreeSlots(from, to, minDurationMinutes);
+            return ResponseEntity.ok(freeSlots);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error retrieving availability: " + e.getMessage());
+        }
+    }
+    
     @GetMapping("/my-bookings/{status}")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
     public ResponseEntity<?> getMyBookingsByStatus(@PathVariable String status, 
@@ -109,19 +243,12 @@ public class BookingController {
     public ResponseEntity<?> cancelBooking(@PathVariable Long id, Authentication authentication) {
         try {
             UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-            User user = userService.findById(userPrincipal.getId()).orElse(null);
             
-            if (user == null) {
-                return ResponseEntity.badRequest().body("User not found");
-            }
-            
-            // Check if user owns the booking
-            Booking booking = bookingService.findById(id).orElse(null);
-            if (booking == null || !booking.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.badRequest().body("Booking not found or access denied");
+            // Ownership and current status are checked by the update itself
+            if (!bookingService.cancelBooking(id, userPrincipal.getId())) {
+                return ResponseEntity.badRequest().body("Booking not found, access denied or not cancellable");
             }
             
-            bookingService.cancelBooking(id);
             return ResponseEntity.ok("Booking cancelled successfully");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error cancelling booking: " + e.getMessage());
@@ -135,19 +262,11 @@ public class BookingController {
                                               Authentication authentication) {
         try {
             UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-            User user = userService.findById(userPrincipal.getId()).orElse(null);
             
-            if (user == null) {
-                return ResponseEntity.badRequest().body("User not found");
-            }
-            
-            // Check if user owns the booking
-            Booking booking = bookingService.findById(id).orElse(null);
-            if (booking == null || !booking.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.badRequest().body("Booking not found or access denied");
+            if (!bookingService.rescheduleBooking(id, userPrincipal.getId(), newDateTime)) {
+                return ResponseEntity.badRequest().body("Booking not found, access denied or not reschedulable");
             }
             
-            bookingService.rescheduleBooking(id, newDateTime);
             return ResponseEntity.ok("Booking rescheduled successfully");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error rescheduling booking: " + e.getMessage());
@@ -156,10 +275,25 @@ public class BookingController {
     
     @GetMapping("/admin/all")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<?> getAllBookings() {
+    public ResponseEntity<?> getAllBookings(@RequestParam(defaultValue = "ndjson") String format,
+                                            @RequestParam(required = false)
+                                            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                            @RequestParam(required = false)
+                                            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                            @RequestParam(required = false) BookingStatus status) {
         try {
-            // This would need to be implemented in BookingService
-            return ResponseEntity.ok("Admin endpoint - all bookings");
+            BookingExportService.Format exportFormat = BookingExportService.Format.valueOf(format.toUpperCase());
+            MediaType contentType = exportFormat == BookingExportService.Format.CSV
+                    ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                    : new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+            
+            // Rows are written from a database cursor on the MVC async executor as they are read
+            StreamingResponseBody body = out -> bookingExportService.export(out, exportFormat, from, to, status);
+            return ResponseEntity.ok()
+                    .contentType(contentType)
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=bookings." + exportFormat.name().toLowerCase())
+                    .body(body);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error retrieving all bookings: " + e.getMessage());
         }
@@ -2,22 +2,37 @@ package com.booking.controller;
 
 import com.booking.entity.ChatMessage;
 import com.booking.entity.ChatSession;
-import com.booking.entity.MessageSenderType;
 import com.booking.entity.User;
 import com.booking.payload.request.ChatMessageRequest;
+import com.booking.payload.request.PageCursor;
 import com.booking.payload.response.ChatMessageResponse;
 import com.booking.payload.response.ChatSessionResponse;
+import com.booking.payload.response.CursorPageResponse;
+import com.booking.repository.ListingVersion;
 import com.booking.security.UserPrincipal;
+import com.booking.service.ChatDispatcher;
+import com.booking.service.ChatMessagePoller;
 import com.booking.service.ChatService;
 import com.booking.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -31,6 +46,17 @@ public class ChatController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private ChatMessagePoller chatMessagePoller;
+    
+    @Value("${ai.client.total-timeout-ms:45000}")
+    private long streamTimeoutMs;
+    
+    private static final int MAX_PAGE_SIZE = 200;
+    
+    // Cap for the unpaginated listing, which clients should replace with /sessions/page
+    private static final int MAX_LISTING_SIZE = 1000;
+    
     @PostMapping("/start")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
     public ResponseEntity<?> startChatSession(Authentication authentication) {
@@ -49,23 +75,49 @@ public class ChatController {
         }
     }
     
+    /**
+     * @deprecated returns at most the {@value #MAX_LISTING_SIZE} latest sessions; use
+     * {@code /sessions/page}
+     */
+    @Deprecated
     @GetMapping("/sessions")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
     public ResponseEntity<?> getMyChatSessions(Authentication authentication) {
         try {
             UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-            User user = userService.findById(userPrincipal.getId()).orElse(null);
+            List<ChatSessionResponse> chatSessionResponses = chatService.getUserChatSessionsPage(
+                    userPrincipal.getId(), null, MAX_LISTING_SIZE);
             
-            if (user == null) {
-                return ResponseEntity.badRequest().body("User not found");
-            }
+            return ResponseEntity.ok()
+                    .header("Deprecation", "true")
+                    .header(HttpHeaders.LINK, "<sessions/page>; rel=\"successor-version\"")
+                    .body(chatSessionResponses);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error retrieving chat sessions: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping("/sessions/page")
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
+    public ResponseEntity<?> getMyChatSessionsPage(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(defaultValue = "50") int limit,
+                                                   Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            PageCursor pageCursor = cursor != null ? PageCursor.decode(cursor) : null;
             
-            List<ChatSession> chatSessions = chatService.getUserChatSessions(user);
-            List<ChatSessionResponse> chatSessionResponses = chatSessions.stream()
-                    .map(ChatSessionResponse::new)
-                    .collect(Collectors.toList());
+            // Fetch one extra row to learn whether another page follows
+            List<ChatSessionResponse> chatSessions = chatService.getUserChatSessionsPage(
+                    userPrincipal.getId(), pageCursor, pageSize + 1);
+            String nextCursor = null;
+            if (chatSessions.size() > pageSize) {
+                chatSessions = chatSessions.subList(0, pageSize);
+                ChatSessionResponse last = chatSessions.get(pageSize - 1);
+                nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+            }
             
-            return ResponseEntity.ok(chatSessionResponses);
+            return ResponseEntity.ok(new CursorPageResponse<>(chatSessions, nextCursor));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error retrieving chat sessions: " + e.getMessage());
         }
@@ -74,9 +126,21 @@ public class ChatController {
     @GetMapping("/sessions/{reportId}/messages")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
     public ResponseEntity<?> getChatMessages(@PathVariable String reportId, 
-                                           Authentication authentication) {
+                                           @RequestParam(required = false) Long after,
+                                           Authentication authentication,
+                                           WebRequest webRequest) {
         try {
             UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            
+            // Ownership check and conditional poll in two indexed queries, before loading anything
+            ListingVersion version = chatService.getChatMessagesVersion(reportId, userPrincipal.getId()).orElse(null);
+            if (version == null) {
+                return ResponseEntity.badRequest().body("Chat session not found or access denied");
+            }
+            if (webRequest.checkNotModified(version.toETag("messages-" + reportId), version.lastModifiedMillis())) {
+                return null;
+            }
+            
             User user = userService.findById(userPrincipal.getId()).orElse(null);
             
             if (user == null) {
@@ -88,7 +152,9 @@ public class ChatController {
                 return ResponseEntity.badRequest().body("Chat session not found or access denied");
             }
             
-            List<ChatMessage> messages = chatService.getChatMessages(chatSession);
+            List<ChatMessage> messages = after != null
+                    ? chatService.getChatMessagesAfter(chatSession, after)
+                    : chatService.getChatMessages(chatSession);
             List<ChatMessageResponse> messageResponses = messages.stream()
                     .map(ChatMessageResponse::new)
                     .collect(Collectors.toList());
@@ -99,37 +165,121 @@ public class ChatController {
         }
     }
     
+    @GetMapping("/sessions/{reportId}/messages/poll")
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
+    public DeferredResult<ResponseEntity<?>> pollChatMessages(@PathVariable String reportId,
+                                                              @RequestParam(defaultValue = "0") long after,
+                                                              Authentication authentication) {
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            Long chatSessionId = chatService.findChatSessionId(reportId, userPrincipal.getId()).orElse(null);
+            if (chatSessionId == null) {
+                return completed(ResponseEntity.badRequest().body("Chat session not found or access denied"));
+            }
+            
+            return chatMessagePoller.poll(chatSessionId, after);
+        } catch (Exception e) {
+            return completed(ResponseEntity.badRequest().body("Error retrieving chat messages: " + e.getMessage()));
+        }
+    }
+    
+    private static DeferredResult<ResponseEntity<?>> completed(ResponseEntity<?> response) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+        result.setResult(response);
+        return result;
+    }
+    
     @PostMapping("/sessions/{reportId}/send")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
-    public ResponseEntity<?> sendMessage(@PathVariable String reportId,
-                                       @Valid @RequestBody ChatMessageRequest messageRequest,
-                                       Authentication authentication) {
+    public CompletableFuture<ResponseEntity<?>> sendMessage(@PathVariable String reportId,
+                                                          @Valid @RequestBody ChatMessageRequest messageRequest,
+                                                          Authentication authentication) {
         try {
             UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
             User user = userService.findById(userPrincipal.getId()).orElse(null);
             
             if (user == null) {
-                return ResponseEntity.badRequest().body("User not found");
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("User not found"));
             }
             
             ChatSession chatSession = chatService.findByReportId(reportId).orElse(null);
             if (chatSession == null || !chatSession.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.badRequest().body("Chat session not found or access denied");
+                return CompletableFuture.completedFuture(
+                        ResponseEntity.badRequest().body("Chat session not found or access denied"));
             }
             
-            // Add user message
-            ChatMessage userMessage = chatService.addMessage(chatSession, messageRequest.getContent(), MessageSenderType.USER);
+            // Store the user message and the AI answer off the request thread, in order within the session
+            return chatService.sendMessage(chatSession, messageRequest.getContent())
+                    .<ResponseEntity<?>>thenApply(aiMessage -> ResponseEntity.ok(new ChatMessageResponse(aiMessage)))
+                    .exceptionally(e -> sendFailure(e.getCause() != null ? e.getCause() : e));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(sendFailure(e));
+        }
+    }
+    
+    @PostMapping(value = "/sessions/{reportId}/send/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('BUSINESS')")
+    public SseEmitter sendMessageStream(@PathVariable String reportId,
+                                        @Valid @RequestBody ChatMessageRequest messageRequest,
+                                        Authentication authentication) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        try {
+            UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
+            User user = userService.findById(userPrincipal.getId()).orElse(null);
             
-            // Get AI response
-            String aiResponse = chatService.getAIResponse(messageRequest.getContent(), reportId);
+            if (user == null) {
+                return sendError(emitter, "User not found");
+            }
             
-            // Add AI message
-            ChatMessage aiMessage = chatService.addMessage(chatSession, aiResponse, MessageSenderType.AI);
+            ChatSession chatSession = chatService.findByReportId(reportId).orElse(null);
+            if (chatSession == null || !chatSession.getUser().getId().equals(user.getId())) {
+                return sendError(emitter, "Chat session not found or access denied");
+            }
             
-            return ResponseEntity.ok(new ChatMessageResponse(aiMessage));
+            chatService.sendMessageStreaming(chatSession, messageRequest.getContent(), chunk -> {
+                try {
+                    emitter.send(SseEmitter.event().name("token").data(chunk, MediaType.TEXT_PLAIN));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).whenComplete((aiMessage, e) -> {
+                if (e != null) {
+                    sendError(emitter, String.valueOf(sendFailure(e.getCause() != null ? e.getCause() : e).getBody()));
+                    return;
+                }
+                try {
+                    emitter.send(SseEmitter.event().name("done").data(new ChatMessageResponse(aiMessage)));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException ex) {
+                    // Client already disconnected; the answer has been stored regardless
+                }
+            });
         } catch (Exception e) {
-            return ResponseEntity.badRequest().body("Error sending message: " + e.getMessage());
+            return sendError(emitter, String.valueOf(sendFailure(e).getBody()));
+        }
+        return emitter;
+    }
+    
+    private static ResponseEntity<?> sendFailure(Throwable e) {
+        if (e instanceof ChatDispatcher.QueueFullException) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body("Too many messages waiting in this chat, please wait for the answers");
+        }
+        if (e instanceof RejectedExecutionException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Chat assistant is busy, please try again shortly");
+        }
+        return ResponseEntity.badRequest().body("Error sending message: " + e.getMessage());
+    }
+    
+    private SseEmitter sendError(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(message, MediaType.TEXT_PLAIN));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
         }
+        return emitter;
     }
     
     @PostMapping("/sessions/{reportId}/close")
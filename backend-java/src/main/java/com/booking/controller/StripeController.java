@@ -3,17 +3,21 @@ package com.booking.controller;
 import com.booking.entity.Booking;
 import com.booking.payload.request.PaymentRequest;
 import com.booking.payload.response.PaymentResponse;
+import com.booking.security.UserPrincipal;
 import com.booking.service.BookingService;
 import com.booking.service.StripeService;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -26,18 +30,49 @@ public class StripeController {
     @Autowired
     private BookingService bookingService;
     
+    @Value("${stripe.currency:usd}")
+    private String bookingCurrency;
+    
     @PostMapping("/create-payment-intent")
-    public ResponseEntity<?> createPaymentIntent(@RequestBody PaymentRequest paymentRequest) {
+    public ResponseEntity<?> createPaymentIntent(@RequestBody PaymentRequest paymentRequest,
+                                                 Authentication authentication) {
         try {
+            Long bookingId = paymentRequest.getBookingId();
+            UserPrincipal userPrincipal = principalOf(authentication);
+            if (bookingId != null && userPrincipal == null) {
+                return ResponseEntity.badRequest().body("Authentication required to pay for a booking");
+            }
+            
+            // A booking is charged its own price, whatever the client asks for
+            BigDecimal amount = paymentRequest.getAmount();
+            String currency = paymentRequest.getCurrency();
+            if (bookingId != null) {
+                Optional<Booking> hold = bookingService.findHold(bookingId, userPrincipal.getId());
+                if (hold.isEmpty()) {
+                    return ResponseEntity.badRequest().body("Booking hold not found or expired");
+                }
+                amount = hold.get().getPrice();
+                currency = bookingCurrency;
+            }
+            
             PaymentIntent paymentIntent = stripeService.createPaymentIntent(
-                paymentRequest.getAmount(),
-                paymentRequest.getCurrency(),
+                amount,
+                currency,
                 paymentRequest.getDescription()
             );
             
+            // The hold must still be live and the caller's; otherwise the intent is abandoned
+            if (bookingId != null) {
+                if (!bookingService.attachPaymentIntent(bookingId, userPrincipal.getId(), paymentIntent.getId())) {
+                    stripeService.cancelPaymentIntent(paymentIntent.getId());
+                    return ResponseEntity.badRequest().body("Booking hold not found or expired");
+                }
+            }
+            
             Map<String, Object> response = new HashMap<>();
             response.put("client_secret", paymentIntent.getClientSecret());
             response.put("payment_intent_id", paymentIntent.getId());
+            response.put("booking_id", bookingId);
             
             return ResponseEntity.ok(response);
         } catch (StripeException e) {
@@ -49,10 +84,14 @@ public class StripeController {
     public ResponseEntity<?> confirmPayment(@RequestParam String paymentIntentId) {
         try {
             PaymentIntent paymentIntent = stripeService.confirmPaymentIntent(paymentIntentId);
+            boolean bookingConfirmed = "succeeded".equals(paymentIntent.getStatus())
+                    && paysForBooking(paymentIntent)
+                    && bookingService.confirmHold(paymentIntentId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("status", paymentIntent.getStatus());
             response.put("payment_intent_id", paymentIntent.getId());
+            response.put("booking_confirmed", bookingConfirmed);
             
             return ResponseEntity.ok(response);
         } catch (StripeException e) {
@@ -61,13 +100,23 @@ public class StripeController {
     }
     
     @PostMapping("/cancel-payment")
-    public ResponseEntity<?> cancelPayment(@RequestParam String paymentIntentId) {
+    public ResponseEntity<?> cancelPayment(@RequestParam String paymentIntentId, Authentication authentication) {
         try {
+            UserPrincipal userPrincipal = principalOf(authentication);
+            if (userPrincipal == null) {
+                return ResponseEntity.badRequest().body("Authentication required to cancel a payment");
+            }
+            if (!bookingService.isPaymentOfUser(paymentIntentId, userPrincipal.getId())) {
+                return ResponseEntity.badRequest().body("Payment not found");
+            }
+            
             PaymentIntent paymentIntent = stripeService.cancelPaymentIntent(paymentIntentId);
+            boolean holdReleased = bookingService.releaseHold(paymentIntentId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("status", paymentIntent.getStatus());
             response.put("payment_intent_id", paymentIntent.getId());
+            response.put("hold_released", holdReleased);
             
             return ResponseEntity.ok(response);
         } catch (StripeException e) {
@@ -106,4 +155,18 @@ public class StripeController {
             return ResponseEntity.badRequest().body("Error creating checkout session: " + e.getMessage());
         }
     }
+    
+    // The Stripe endpoints are open, so authentication is optional here
+    private static UserPrincipal principalOf(Authentication authentication) {
+        return authentication != null && authentication.getPrincipal() instanceof UserPrincipal userPrincipal
+                ? userPrincipal : null;
+    }
+    
+    // The intent must charge the full price of the booking it is attached to
+    private boolean paysForBooking(PaymentIntent paymentIntent) {
+        Optional<Booking> booking = bookingService.findByStripePaymentIntentId(paymentIntent.getId());
+        return booking.isPresent()
+                && paymentIntent.getAmount() == stripeService.toMinorUnits(booking.get().getPrice())
+                && bookingCurrency.equalsIgnoreCase(paymentIntent.getCurrency());
+    }
 }
@@ -9,8 +9,14 @@ import java.time.LocalDateTime;
 @Table(name = "bookings")
 public class Booking {
     
+    public static final String ID_SEQUENCE = "bookings";
+    public static final int ID_ALLOCATION_SIZE = 50;
+    
+    // Pooled table ids let Hibernate batch inserts, which IDENTITY columns rule out
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "booking_id")
+    @TableGenerator(name = "booking_id", table = "id_sequences", pkColumnName = "sequence_name",
+                    valueColumnName = "next_val", pkColumnValue = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -45,6 +51,10 @@ public class Booking {
     @Column(name = "stripe_payment_intent_id")
     private String stripePaymentIntentId;
     
+    // Set while the booking is a checkout hold; the slot is released if payment has not completed by then
+    @Column(name = "hold_expires_at")
+    private LocalDateTime holdExpiresAt;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -156,6 +166,14 @@ public class Booking {
         this.stripePaymentIntentId = stripePaymentIntentId;
     }
     
+    public LocalDateTime getHoldExpiresAt() {
+        return holdExpiresAt;
+    }
+    
+    public void setHoldExpiresAt(LocalDateTime holdExpiresAt) {
+        this.holdExpiresAt = holdExpiresAt;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
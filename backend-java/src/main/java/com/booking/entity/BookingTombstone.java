@@ -0,0 +1,54 @@
+package com.booking.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Left behind when a booking row is deleted, so delta-syncing clients learn to drop it
+@Entity
+@Table(name = "booking_tombstones")
+public class BookingTombstone {
+    
+    @Id
+    @Column(name = "booking_id")
+    private Long bookingId;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+    
+    // Constructors
+    public BookingTombstone() {}
+    
+    public BookingTombstone(Long bookingId, Long userId, LocalDateTime deletedAt) {
+        this.bookingId = bookingId;
+        this.userId = userId;
+        this.deletedAt = deletedAt;
+    }
+    
+    // Getters and Setters
+    public Long getBookingId() {
+        return bookingId;
+    }
+    
+    public void setBookingId(Long bookingId) {
+        this.bookingId = bookingId;
+    }
+    
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+    
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
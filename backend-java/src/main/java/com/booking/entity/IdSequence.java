@@ -0,0 +1,40 @@
+package com.booking.entity;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "id_sequences")
+public class IdSequence {
+    
+    @Id
+    @Column(name = "sequence_name", length = 64)
+    private String sequenceName;
+    
+    @Column(name = "next_val", nullable = false)
+    private Long nextVal;
+    
+    // Constructors
+    public IdSequence() {}
+    
+    public IdSequence(String sequenceName, Long nextVal) {
+        this.sequenceName = sequenceName;
+        this.nextVal = nextVal;
+    }
+    
+    // Getters and Setters
+    public String getSequenceName() {
+        return sequenceName;
+    }
+    
+    public void setSequenceName(String sequenceName) {
+        this.sequenceName = sequenceName;
+    }
+    
+    public Long getNextVal() {
+        return nextVal;
+    }
+    
+    public void setNextVal(Long nextVal) {
+        this.nextVal = nextVal;
+    }
+}
@@ -0,0 +1,42 @@
+package com.booking.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Digest of a token revoked before its expiry, shared by every node until the token would have expired
+@Entity
+@Table(name = "revoked_tokens")
+public class RevokedToken {
+    
+    @Id
+    @Column(name = "token_digest", length = 64)
+    private String tokenDigest;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    // Constructors
+    public RevokedToken() {}
+    
+    public RevokedToken(String tokenDigest, LocalDateTime expiresAt) {
+        this.tokenDigest = tokenDigest;
+        this.expiresAt = expiresAt;
+    }
+    
+    // Getters and Setters
+    public String getTokenDigest() {
+        return tokenDigest;
+    }
+    
+    public void setTokenDigest(String tokenDigest) {
+        this.tokenDigest = tokenDigest;
+    }
+    
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -60,6 +60,9 @@ public class User implements UserDetails {
     @Column(name = "is_credentials_non_expired")
     private Boolean credentialsNonExpired = true;
     
+    @Column(name = "token_version")
+    private Long tokenVersion = 0L;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -210,6 +213,14 @@ public class User implements UserDetails {
         this.credentialsNonExpired = credentialsNonExpired;
     }
     
+    public Long getTokenVersion() {
+        return tokenVersion;
+    }
+    
+    public void setTokenVersion(Long tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
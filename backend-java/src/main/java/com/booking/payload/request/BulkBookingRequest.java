@@ -0,0 +1,27 @@
+package com.booking.payload.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+public class BulkBookingRequest {
+    
+    @NotEmpty
+    @Size(max = 10000)
+    private List<@Valid BookingRequest> bookings;
+    
+    public BulkBookingRequest() {}
+    
+    public BulkBookingRequest(List<BookingRequest> bookings) {
+        this.bookings = bookings;
+    }
+    
+    public List<BookingRequest> getBookings() {
+        return bookings;
+    }
+    
+    public void setBookings(List<BookingRequest> bookings) {
+        this.bookings = bookings;
+    }
+}
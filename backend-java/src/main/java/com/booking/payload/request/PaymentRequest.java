@@ -18,6 +18,9 @@ public class PaymentRequest {
     
     private String cancelUrl;
     
+    // Optional checkout hold this payment is for
+    private Long bookingId;
+    
     public PaymentRequest() {}
     
     public PaymentRequest(BigDecimal amount, String currency, String description) {
@@ -65,4 +68,12 @@ public class PaymentRequest {
     public void setCancelUrl(String cancelUrl) {
         this.cancelUrl = cancelUrl;
     }
+    
+    public Long getBookingId() {
+        return bookingId;
+    }
+    
+    public void setBookingId(Long bookingId) {
+        this.bookingId = bookingId;
+    }
 }
@@ -0,0 +1,53 @@
+package com.booking.payload.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class BookingChangesResponse {
+    
+    // True when changed holds every booking and the client should replace its copy
+    private boolean full;
+    private List<BookingResponse> changed;
+    private List<Long> deletedIds;
+    private LocalDateTime watermark;
+    
+    public BookingChangesResponse(boolean full, List<BookingResponse> changed, List<Long> deletedIds,
+                                  LocalDateTime watermark) {
+        this.full = full;
+        this.changed = changed;
+        this.deletedIds = deletedIds;
+        this.watermark = watermark;
+    }
+    
+    public boolean isFull() {
+        return full;
+    }
+    
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+    
+    public List<BookingResponse> getChanged() {
+        return changed;
+    }
+    
+    public void setChanged(List<BookingResponse> changed) {
+        this.changed = changed;
+    }
+    
+    public List<Long> getDeletedIds() {
+        return deletedIds;
+    }
+    
+    public void setDeletedIds(List<Long> deletedIds) {
+        this.deletedIds = deletedIds;
+    }
+    
+    public LocalDateTime getWatermark() {
+        return watermark;
+    }
+    
+    public void setWatermark(LocalDateTime watermark) {
+        this.watermark = watermark;
+    }
+}
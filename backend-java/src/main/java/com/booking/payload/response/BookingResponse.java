@@ -17,6 +17,7 @@ public class BookingResponse {
     private BookingStatus status;
     private String notes;
     private String stripePaymentIntentId;
+    private LocalDateTime holdExpiresAt;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
@@ -31,10 +32,31 @@ public class BookingResponse {
         this.status = booking.getStatus();
         this.notes = booking.getNotes();
         this.stripePaymentIntentId = booking.getStripePaymentIntentId();
+        this.holdExpiresAt = booking.getHoldExpiresAt();
         this.createdAt = booking.getCreatedAt();
         this.updatedAt = booking.getUpdatedAt();
     }
     
+    // Used by JPQL constructor expressions so listings select only the response columns
+    public BookingResponse(Long id, Long userId, LocalDateTime bookingDateTime, Integer durationMinutes,
+                           String serviceName, String serviceDescription, BigDecimal price,
+                           BookingStatus status, String notes, String stripePaymentIntentId,
+                           LocalDateTime holdExpiresAt, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.userId = userId;
+        this.bookingDateTime = bookingDateTime;
+        this.durationMinutes = durationMinutes;
+        this.serviceName = serviceName;
+        this.serviceDescription = serviceDescription;
+        this.price = price;
+        this.status = status;
+        this.notes = notes;
+        this.stripePaymentIntentId = stripePaymentIntentId;
+        this.holdExpiresAt = holdExpiresAt;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -116,6 +138,14 @@ public class BookingResponse {
         this.stripePaymentIntentId = stripePaymentIntentId;
     }
     
+    public LocalDateTime getHoldExpiresAt() {
+        return holdExpiresAt;
+    }
+    
+    public void setHoldExpiresAt(LocalDateTime holdExpiresAt) {
+        this.holdExpiresAt = holdExpiresAt;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -22,6 +22,17 @@ public class ChatSessionResponse {
         this.updatedAt = chatSession.getUpdatedAt();
     }
     
+    // Used by JPQL constructor expressions so listings select only the response columns
+    public ChatSessionResponse(Long id, String reportId, Long userId, ChatStatus status,
+                               LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.reportId = reportId;
+        this.userId = userId;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -0,0 +1,31 @@
+package com.booking.payload.response;
+
+import java.util.List;
+
+public class CursorPageResponse<T> {
+    
+    private List<T> items;
+    private String nextCursor;
+    
+    public CursorPageResponse(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+    
+    // Getters and Setters
+    public List<T> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
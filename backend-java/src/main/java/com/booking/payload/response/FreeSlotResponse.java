@@ -0,0 +1,30 @@
+package com.booking.payload.response;
+
+import java.time.LocalDateTime;
+
+public class FreeSlotResponse {
+    
+    private LocalDateTime start;
+    private LocalDateTime end;
+    
+    public FreeSlotResponse(LocalDateTime start, LocalDateTime end) {
+        this.start = start;
+        this.end = end;
+    }
+    
+    public LocalDateTime getStart() {
+        return start;
+    }
+    
+    public void setStart(LocalDateTime start) {
+        this.start = start;
+    }
+    
+    public LocalDateTime getEnd() {
+        return end;
+    }
+    
+    public void setEnd(LocalDateTime end) {
+        this.end = end;
+    }
+}
@@ -3,14 +3,27 @@ package com.booking.repository;
 import com.booking.entity.Booking;
 import com.booking.entity.BookingStatus;
 import com.booking.entity.User;
+import com.booking.payload.response.BookingResponse;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface BookingRepository extends JpaRepository<Booking, Long> {
@@ -29,4 +42,170 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     
     @Query("SELECT b FROM Booking b WHERE b.stripePaymentIntentId = :paymentIntentId")
     Optional<Booking> findByStripePaymentIntentId(@Param("paymentIntentId") String paymentIntentId);
+    
+    // Locks the index range an overlapping booking could start in, so concurrent writers on any node serialise
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Booking b WHERE b.bookingDateTime >= :from AND b.bookingDateTime < :to "
+            + "AND b.status IN :statuses")
+    List<Booking> lockStartingBetween(@Param("from") LocalDateTime from,
+                                      @Param("to") LocalDateTime to,
+                                      @Param("statuses") Collection<BookingStatus> statuses);
+    
+    @Query("SELECT b FROM Booking b WHERE b.id = :id AND b.user.id = :userId AND b.status = :status")
+    Optional<Booking> findByIdAndUserIdAndStatus(@Param("id") Long id,
+                                                 @Param("userId") Long userId,
+                                                 @Param("status") BookingStatus status);
+    
+    @Query("SELECT COUNT(b) > 0 FROM Booking b WHERE b.stripePaymentIntentId = :paymentIntentId AND b.user.id = :userId")
+    boolean existsByStripePaymentIntentIdAndUserId(@Param("paymentIntentId") String paymentIntentId,
+                                                   @Param("userId") Long userId);
+    
+    @Query("SELECT b.durationMinutes FROM Booking b WHERE b.id = :id AND b.user.id = :userId AND b.status IN :statuses")
+    Optional<Integer> findDurationMinutesByIdAndUserIdAndStatusIn(@Param("id") Long id,
+                                                                  @Param("userId") Long userId,
+                                                                  @Param("statuses") Collection<BookingStatus> statuses);
+    
+    // Conditional transitions: the WHERE clause is the ownership and state check, the update count the result
+    @Modifying
+    @Query("UPDATE Booking b SET b.status = :newStatus, b.updatedAt = :now "
+            + "WHERE b.id = :id AND b.user.id = :userId AND b.status IN :fromStatuses")
+    int transitionStatus(@Param("id") Long id,
+                         @Param("userId") Long userId,
+                         @Param("fromStatuses") Collection<BookingStatus> fromStatuses,
+                         @Param("newStatus") BookingStatus newStatus,
+                         @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE Booking b SET b.bookingDateTime = :newDateTime, b.status = :newStatus, b.updatedAt = :now "
+            + "WHERE b.id = :id AND b.user.id = :userId AND b.status IN :fromStatuses")
+    int reschedule(@Param("id") Long id,
+                   @Param("userId") Long userId,
+                   @Param("fromStatuses") Collection<BookingStatus> fromStatuses,
+                   @Param("newDateTime") LocalDateTime newDateTime,
+                   @Param("newStatus") BookingStatus newStatus,
+                   @Param("now") LocalDateTime now);
+    
+    // Checkout holds: (id, holdExpiresAt) of every open hold, for rescheduling their expiry at startup
+    @Query("SELECT b.id, b.holdExpiresAt FROM Booking b WHERE b.status = :holdStatus AND b.holdExpiresAt IS NOT NULL")
+    List<Object[]> findOpenHolds(@Param("holdStatus") BookingStatus holdStatus);
+    
+    @Query("SELECT b.id FROM Booking b WHERE b.status = :holdStatus AND b.holdExpiresAt <= :expiredBy")
+    List<Long> findExpiredHoldIds(@Param("holdStatus") BookingStatus holdStatus,
+                                  @Param("expiredBy") LocalDateTime expiredBy,
+                                  Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE Booking b SET b.status = :releasedStatus, b.updatedAt = :now "
+            + "WHERE b.id IN :ids AND b.status = :holdStatus AND b.holdExpiresAt <= :now")
+    int releaseExpiredHolds(@Param("ids") Collection<Long> ids,
+                            @Param("holdStatus") BookingStatus holdStatus,
+                            @Param("releasedStatus") BookingStatus releasedStatus,
+                            @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE Booking b SET b.stripePaymentIntentId = :paymentIntentId, b.updatedAt = :now "
+            + "WHERE b.id = :id AND b.user.id = :userId AND b.status = :holdStatus AND b.holdExpiresAt > :now")
+    int attachPaymentIntentToHold(@Param("id") Long id,
+                                  @Param("userId") Long userId,
+                                  @Param("paymentIntentId") String paymentIntentId,
+                                  @Param("holdStatus") BookingStatus holdStatus,
+                                  @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE Booking b SET b.status = :newStatus, b.holdExpiresAt = NULL, b.updatedAt = :now "
+            + "WHERE b.id = :id AND b.status = :holdStatus AND b.holdExpiresAt IS NOT NULL")
+    int resolveHold(@Param("id") Long id,
+                    @Param("holdStatus") BookingStatus holdStatus,
+                    @Param("newStatus") BookingStatus newStatus,
+                    @Param("now") LocalDateTime now);
+    
+    @Query("SELECT b.id FROM Booking b WHERE b.id IN :ids AND b.status IN :statuses")
+    List<Long> findIdsByIdInAndStatusIn(@Param("ids") Collection<Long> ids,
+                                        @Param("statuses") Collection<BookingStatus> statuses);
+    
+    // Maintenance job: keyset-paged candidates by start time, then one guarded UPDATE per chunk
+    @Query("SELECT b.id, b.bookingDateTime, b.durationMinutes FROM Booking b "
+            + "WHERE b.status IN :statuses AND b.bookingDateTime < :now "
+            + "AND (b.bookingDateTime > :afterTime OR (b.bookingDateTime = :afterTime AND b.id > :afterId)) "
+            + "ORDER BY b.bookingDateTime, b.id")
+    List<Object[]> findStartedAfter(@Param("statuses") Collection<BookingStatus> statuses,
+                                    @Param("now") LocalDateTime now,
+                                    @Param("afterTime") LocalDateTime afterTime,
+                                    @Param("afterId") Long afterId,
+                                    Pageable pageable);
+    
+    @Query("SELECT b.id FROM Booking b WHERE b.status = :status AND b.id > :afterId "
+            + "AND ((b.holdExpiresAt IS NOT NULL AND b.holdExpiresAt <= :now) OR b.bookingDateTime < :now) "
+            + "ORDER BY b.id")
+    List<Long> findStalePendingIds(@Param("status") BookingStatus status,
+                                   @Param("now") LocalDateTime now,
+                                   @Param("afterId") Long afterId,
+                                   Pageable pageable);
+    
+    // Re-checks the end time so a booking rescheduled since it was selected is not completed early
+    @Modifying
+    @Query(value = "UPDATE bookings SET status = :completedStatus, updated_at = :now "
+            + "WHERE id IN :ids AND status IN :fromStatuses "
+            + "AND booking_date_time + INTERVAL duration_minutes MINUTE <= :now",
+           nativeQuery = true)
+    int completeFinished(@Param("ids") Collection<Long> ids,
+                         @Param("fromStatuses") Collection<String> fromStatuses,
+                         @Param("completedStatus") String completedStatus,
+                         @Param("now") LocalDateTime now);
+    
+    // Same staleness condition as findStalePendingIds, so a hold extended or moved meanwhile is kept
+    @Modifying
+    @Query("UPDATE Booking b SET b.status = :cancelledStatus, b.updatedAt = :now "
+            + "WHERE b.id IN :ids AND b.status = :status "
+            + "AND ((b.holdExpiresAt IS NOT NULL AND b.holdExpiresAt <= :now) OR b.bookingDateTime < :now)")
+    int cancelStalePending(@Param("ids") Collection<Long> ids,
+                           @Param("status") BookingStatus status,
+                           @Param("cancelledStatus") BookingStatus cancelledStatus,
+                           @Param("now") LocalDateTime now);
+    
+    String BOOKING_RESPONSE_PROJECTION = "SELECT new com.booking.payload.response.BookingResponse("
+            + "b.id, b.user.id, b.bookingDateTime, b.durationMinutes, b.serviceName, b.serviceDescription, "
+            + "b.price, b.status, b.notes, b.stripePaymentIntentId, b.holdExpiresAt, b.createdAt, b.updatedAt) "
+            + "FROM Booking b ";
+    
+    @Query(BOOKING_RESPONSE_PROJECTION
+            + "WHERE b.user.id = :userId ORDER BY b.bookingDateTime DESC, b.id DESC")
+    List<BookingResponse> findFirstPageByUserId(@Param("userId") Long userId, Pageable pageable);
+    
+    @Query(BOOKING_RESPONSE_PROJECTION
+            + "WHERE b.user.id = :userId AND (b.bookingDateTime < :bookingDateTime "
+            + "OR (b.bookingDateTime = :bookingDateTime AND b.id < :id)) "
+            + "ORDER BY b.bookingDateTime DESC, b.id DESC")
+    List<BookingResponse> findPageByUserIdBefore(@Param("userId") Long userId,
+                                                 @Param("bookingDateTime") LocalDateTime bookingDateTime,
+                                                 @Param("id") Long id,
+                                                 Pageable pageable);
+    
+    // Must be consumed inside a transaction and closed; needs useCursorFetch on the MySQL URL to stream
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query(BOOKING_RESPONSE_PROJECTION
+            + "WHERE (:from IS NULL OR b.bookingDateTime >= :from) "
+            + "AND (:to IS NULL OR b.bookingDateTime < :to) "
+            + "AND (:status IS NULL OR b.status = :status) "
+            + "ORDER BY b.id")
+    Stream<BookingResponse> streamForExport(@Param("from") LocalDateTime from,
+                                            @Param("to") LocalDateTime to,
+                                            @Param("status") BookingStatus status);
+    
+    @Query(BOOKING_RESPONSE_PROJECTION
+            + "WHERE b.user.id = :userId AND b.updatedAt > :since ORDER BY b.updatedAt, b.id")
+    List<BookingResponse> findChangedSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+    
+    @Query(BOOKING_RESPONSE_PROJECTION + "WHERE b.user.id = :userId ORDER BY b.updatedAt, b.id")
+    List<BookingResponse> findAllResponsesByUserId(@Param("userId") Long userId);
+    
+    @Query("SELECT b.user.id FROM Booking b WHERE b.id = :id")
+    Optional<Long> findUserIdById(@Param("id") Long id);
+    
+    @Query("SELECT COUNT(b) AS count, MAX(b.id) AS maxId, MAX(b.updatedAt) AS lastModified "
+            + "FROM Booking b WHERE b.user.id = :userId")
+    ListingVersion findListingVersionByUserId(@Param("userId") Long userId);
 }
@@ -0,0 +1,25 @@
+package com.booking.repository;
+
+import com.booking.entity.BookingTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface BookingTombstoneRepository extends JpaRepository<BookingTombstone, Long> {
+    
+    @Query("SELECT t.bookingId FROM BookingTombstone t WHERE t.userId = :userId AND t.deletedAt > :since")
+    List<Long> findBookingIdsDeletedSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+    
+    @Query("SELECT MAX(t.deletedAt) FROM BookingTombstone t WHERE t.userId = :userId")
+    LocalDateTime findLastDeletedAtByUserId(@Param("userId") Long userId);
+    
+    @Modifying
+    @Query("DELETE FROM BookingTombstone t WHERE t.deletedAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
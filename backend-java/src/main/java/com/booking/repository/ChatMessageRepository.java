@@ -3,6 +3,7 @@ package com.booking.repository;
 import com.booking.entity.ChatMessage;
 import com.booking.entity.ChatSession;
 import com.booking.entity.MessageSenderType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -17,10 +18,19 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
     
     List<ChatMessage> findByChatSessionOrderByCreatedAtAsc(ChatSession chatSession);
     
+    List<ChatMessage> findByChatSessionIdAndIdGreaterThanOrderByIdAsc(Long chatSessionId, Long id);
+    
+    List<ChatMessage> findByChatSessionIdOrderByIdDesc(Long chatSessionId, Pageable pageable);
+    
     @Query("SELECT cm FROM ChatMessage cm WHERE cm.chatSession = :chatSession AND cm.senderType = :senderType")
     List<ChatMessage> findByChatSessionAndSenderType(@Param("chatSession") ChatSession chatSession, 
                                                       @Param("senderType") MessageSenderType senderType);
     
     @Query("SELECT cm FROM ChatMessage cm WHERE cm.chatSession = :chatSession ORDER BY cm.createdAt DESC")
     List<ChatMessage> findLatestMessagesByChatSession(@Param("chatSession") ChatSession chatSession);
+    
+    // Messages are append-only, so the count and highest id change with every new message
+    @Query("SELECT COUNT(cm) AS count, MAX(cm.id) AS maxId, MAX(cm.createdAt) AS lastModified "
+            + "FROM ChatMessage cm WHERE cm.chatSession.id = :chatSessionId")
+    ListingVersion findListingVersionByChatSessionId(@Param("chatSessionId") Long chatSessionId);
 }
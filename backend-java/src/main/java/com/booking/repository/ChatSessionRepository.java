@@ -3,11 +3,14 @@ package com.booking.repository;
 import com.booking.entity.ChatSession;
 import com.booking.entity.ChatStatus;
 import com.booking.entity.User;
+import com.booking.payload.response.ChatSessionResponse;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,9 +23,28 @@ public interface ChatSessionRepository extends JpaRepository<ChatSession, Long>
     
     Optional<ChatSession> findByReportId(String reportId);
     
+    @Query("SELECT cs.id FROM ChatSession cs WHERE cs.reportId = :reportId AND cs.user.id = :userId")
+    Optional<Long> findIdByReportIdAndUserId(@Param("reportId") String reportId, @Param("userId") Long userId);
+    
     @Query("SELECT cs FROM ChatSession cs WHERE cs.status = :status")
     List<ChatSession> findByStatus(@Param("status") ChatStatus status);
     
     @Query("SELECT cs FROM ChatSession cs WHERE cs.user.role = :role")
     List<ChatSession> findByUserRole(@Param("role") com.booking.entity.Role role);
+    
+    String CHAT_SESSION_RESPONSE_PROJECTION = "SELECT new com.booking.payload.response.ChatSessionResponse("
+            + "cs.id, cs.reportId, cs.user.id, cs.status, cs.createdAt, cs.updatedAt) FROM ChatSession cs ";
+    
+    @Query(CHAT_SESSION_RESPONSE_PROJECTION
+            + "WHERE cs.user.id = :userId ORDER BY cs.createdAt DESC, cs.id DESC")
+    List<ChatSessionResponse> findFirstPageByUserId(@Param("userId") Long userId, Pageable pageable);
+    
+    @Query(CHAT_SESSION_RESPONSE_PROJECTION
+            + "WHERE cs.user.id = :userId AND (cs.createdAt < :createdAt "
+            + "OR (cs.createdAt = :createdAt AND cs.id < :id)) "
+            + "ORDER BY cs.createdAt DESC, cs.id DESC")
+    List<ChatSessionResponse> findPageByUserIdBefore(@Param("userId") Long userId,
+                                                     @Param("createdAt") LocalDateTime createdAt,
+                                                     @Param("id") Long id,
+                                                     Pageable pageable);
 }
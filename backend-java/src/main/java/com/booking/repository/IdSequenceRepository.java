@@ -0,0 +1,32 @@
+package com.booking.repository;
+
+import com.booking.entity.IdSequence;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface IdSequenceRepository extends JpaRepository<IdSequence, String> {
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM IdSequence s WHERE s.sequenceName = :sequenceName")
+    Optional<IdSequence> findForUpdate(@Param("sequenceName") String sequenceName);
+    
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO id_sequences (sequence_name, next_val) VALUES (:sequenceName, :initialValue)",
+           nativeQuery = true)
+    int createIfMissing(@Param("sequenceName") String sequenceName, @Param("initialValue") long initialValue);
+    
+    // The pooled generator hands out the block of ids up to next_val, so it must sit a block above MAX(id)
+    @Modifying
+    @Query(value = "UPDATE id_sequences SET next_val = GREATEST(next_val, "
+            + "(SELECT COALESCE(MAX(id), 0) + :allocationSize FROM bookings)) WHERE sequence_name = :sequenceName",
+           nativeQuery = true)
+    int raiseAboveBookingIds(@Param("sequenceName") String sequenceName, @Param("allocationSize") int allocationSize);
+}
@@ -0,0 +1,53 @@
+package com.booking.repository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Row count, highest id and latest modification time of a listing, read with one aggregate
+ * query. Any insert, update or delete in the listing changes at least one of them, so together
+ * they identify a version of the listing without loading it and serve as its ETag.
+ *
+ * <p>The modification time alone does not: deleting a row never advances it. A listing whose
+ * rows can be deleted only makes a sound Last-Modified if it folds its deletion times in, as
+ * the bookings listing does with its tombstones.
+ */
+public interface ListingVersion {
+    
+    long getCount();
+    
+    Long getMaxId();
+    
+    LocalDateTime getLastModified();
+    
+    static ListingVersion of(long count, Long maxId, LocalDateTime lastModified) {
+        return new ListingVersion() {
+            @Override
+            public long getCount() {
+                return count;
+            }
+            
+            @Override
+            public Long getMaxId() {
+                return maxId;
+            }
+            
+            @Override
+            public LocalDateTime getLastModified() {
+                return lastModified;
+            }
+        };
+    }
+    
+    // Uses the full stored precision, since changes within one millisecond must still differ
+    default String toETag(String listing) {
+        LocalDateTime lastModified = getLastModified();
+        String modified = lastModified == null ? "-1" : lastModified.toString();
+        return "\"" + listing + "-" + getCount() + "-" + getMaxId() + "-" + modified + "\"";
+    }
+    
+    default long lastModifiedMillis() {
+        LocalDateTime lastModified = getLastModified();
+        return lastModified == null ? -1 : lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,31 @@
+package com.booking.repository;
+
+import com.booking.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+    
+    @Query("SELECT t.expiresAt FROM RevokedToken t WHERE t.tokenDigest = :tokenDigest")
+    Optional<LocalDateTime> findExpiresAtByTokenDigest(@Param("tokenDigest") String tokenDigest);
+    
+    // Signing out twice with the same token is not an error
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO revoked_tokens (token_digest, expires_at) VALUES (:tokenDigest, :expiresAt)",
+           nativeQuery = true)
+    int revokeIfMissing(@Param("tokenDigest") String tokenDigest, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RevokedToken t WHERE t.expiresAt < :cutoff")
+    int deleteExpiredBefore(@Param("cutoff") LocalDateTime cutoff);
+}
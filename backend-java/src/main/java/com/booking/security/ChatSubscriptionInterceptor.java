@@ -0,0 +1,70 @@
+package com.booking.security;
+
+import com.booking.entity.Role;
+import com.booking.service.ChatService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authorizes STOMP frames from clients. Subscribing to a session's topic requires owning the
+ * session or being an admin, the escalation topic is for admins only, and clients may not
+ * SEND at all: every frame on the chat topics is published by the server.
+ */
+@Component
+public class ChatSubscriptionInterceptor implements ChannelInterceptor {
+    
+    public static final String SESSION_TOPIC_PREFIX = "/topic/chat/";
+    
+    public static final String ESCALATIONS_TOPIC = "/topic/chat-escalations";
+    
+    @Autowired
+    private ChatService chatService;
+    
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        
+        if (accessor.getCommand() == StompCommand.SEND) {
+            throw new MessageDeliveryException("Sending is not supported on this endpoint");
+        }
+        if (accessor.getCommand() == StompCommand.SUBSCRIBE) {
+            UserPrincipal principal = principalOf(accessor);
+            String destination = accessor.getDestination();
+            if (principal == null || destination == null || !canSubscribe(principal, destination)) {
+                throw new MessageDeliveryException("Access denied to " + destination);
+            }
+        }
+        return message;
+    }
+    
+    private boolean canSubscribe(UserPrincipal principal, String destination) {
+        boolean admin = principal.getRole() == Role.ADMIN;
+        if (destination.equals(ESCALATIONS_TOPIC)) {
+            return admin;
+        }
+        if (destination.startsWith(SESSION_TOPIC_PREFIX)) {
+            String reportId = destination.substring(SESSION_TOPIC_PREFIX.length());
+            return admin || chatService.findChatSessionId(reportId, principal.getId()).isPresent();
+        }
+        return false;
+    }
+    
+    private static UserPrincipal principalOf(StompHeaderAccessor accessor) {
+        if (accessor.getUser() instanceof UsernamePasswordAuthenticationToken authentication
+                && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal;
+        }
+        return null;
+    }
+}
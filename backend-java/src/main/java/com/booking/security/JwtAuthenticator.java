@@ -0,0 +1,87 @@
+package com.booking.security;
+
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Verifies a JWT and resolves its principal through the token and principal caches. Shared by
+ * {@link AuthTokenFilter} for HTTP requests and {@link JwtHandshakeInterceptor} for WebSocket
+ * handshakes.
+ */
+@Component
+public class JwtAuthenticator {
+    
+    private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticator.class);
+    
+    @Autowired
+    private JwtUtils jwtUtils;
+    
+    @Autowired
+    private PrincipalCache principalCache;
+    
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+    
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+    
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+    
+    /**
+     * The principal the token stands for, or null if the token is invalid, expired or revoked.
+     */
+    public UserPrincipal authenticate(String jwt) {
+        String digest = jwtUtils.digest(jwt);
+        if (tokenRevocationList.isRevoked(digest)) {
+            logger.debug("Rejecting revoked token");
+            return null;
+        }
+        
+        // A cached token is only trusted while its version is still the last one seen for the user
+        UserPrincipal cached = verifiedTokenCache.get(digest);
+        if (cached != null && tokenVersionCache.isCurrent(cached.getId(), cached.getTokenVersion())) {
+            return cached;
+        }
+        
+        Claims claims = jwtUtils.parseJwtToken(jwt);
+        if (claims == null) {
+            return null;
+        }
+        
+        UserPrincipal principal = loadPrincipal(claims);
+        if (principal != null) {
+            verifiedTokenCache.put(digest, principal, claims.getExpiration());
+        }
+        return principal;
+    }
+    
+    private UserPrincipal loadPrincipal(Claims claims) {
+        if (jwtUtils.isStateless()) {
+            UserPrincipal claimed = jwtUtils.getPrincipalFromClaims(claims);
+            if (claimed != null) {
+                if (tokenVersionCache.isCurrent(claimed.getId(), claimed.getTokenVersion())) {
+                    return claimed;
+                }
+                
+                // Unknown or changed version: confirm against the database before trusting the claims
+                UserPrincipal current = principalCache.loadById(claimed.getId());
+                if (!current.getTokenVersion().equals(claimed.getTokenVersion())) {
+                    logger.debug("Rejecting revoked token for user {}", claimed.getId());
+                    return null;
+                }
+                tokenVersionCache.record(current.getId(), current.getTokenVersion());
+                return claimed;
+            }
+        }
+        
+        UserPrincipal principal = principalCache.loadByUsername(claims.getSubject());
+        if (principal != null && verifiedTokenCache.isEnabled()) {
+            tokenVersionCache.record(principal.getId(), principal.getTokenVersion());
+        }
+        return principal;
+    }
+}
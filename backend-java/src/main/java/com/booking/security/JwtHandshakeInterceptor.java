@@ -0,0 +1,79 @@
+package com.booking.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Authenticates a WebSocket handshake once with the caller's JWT, taken from the
+ * {@code Authorization: Bearer} header or, since browsers cannot set headers on a WebSocket,
+ * from the {@code access_token} query parameter. The principal then stays with the session
+ * for its lifetime; a handshake without a valid token is refused with 401.
+ */
+@Component
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+    
+    private static final String PRINCIPAL_ATTRIBUTE = JwtHandshakeInterceptor.class.getName() + ".principal";
+    
+    @Autowired
+    private JwtAuthenticator jwtAuthenticator;
+    
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String jwt = parseJwt(request);
+        UserPrincipal principal = jwt != null ? jwtAuthenticator.authenticate(jwt) : null;
+        if (principal == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        
+        attributes.put(PRINCIPAL_ATTRIBUTE,
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        return true;
+    }
+    
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+    
+    /**
+     * Handshake handler that makes the authenticated principal the user of the session.
+     */
+    public DefaultHandshakeHandler handshakeHandler() {
+        return new DefaultHandshakeHandler() {
+            @Override
+            protected Principal determineUser(ServerHttpRequest request, WebSocketHandler wsHandler,
+                                              Map<String, Object> attributes) {
+                return (Principal) attributes.get(PRINCIPAL_ATTRIBUTE);
+            }
+        };
+    }
+    
+    private String parseJwt(ServerHttpRequest request) {
+        String headerAuth = request.getHeaders().getFirst("Authorization");
+        if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
+            return headerAuth.substring(7);
+        }
+        
+        if (request instanceof ServletServerHttpRequest servletRequest) {
+            String token = servletRequest.getServletRequest().getParameter("access_token");
+            if (StringUtils.hasText(token)) {
+                return token;
+            }
+        }
+        return null;
+    }
+}
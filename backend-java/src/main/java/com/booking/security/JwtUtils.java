@@ -1,7 +1,10 @@
 package com.booking.security;
 
+import com.booking.entity.Role;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,6 +12,10 @@ import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 
 @Component
@@ -22,46 +29,121 @@ public class JwtUtils {
     @Value("${jwt.expiration}")
     private int jwtExpirationMs;
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    @Value("${jwt.stateless.enabled:false}")
+    private boolean stateless;
+    
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_ROLE = "role";
+    private static final String CLAIM_TOKEN_VERSION = "ver";
+    private static final String CLAIM_EMAIL = "email";
+    private static final String CLAIM_FIRST_NAME = "given_name";
+    private static final String CLAIM_LAST_NAME = "family_name";
+    private static final String CLAIM_CUSTOMER_SUPPORT_ID = "csid";
+    
+    private SecretKey signingKey;
+    
+    private JwtParser jwtParser;
+    
+    @PostConstruct
+    public void init() {
+        // Both are immutable and thread-safe, so build them once instead of per request
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
     
     public String generateJwtToken(Authentication authentication) {
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
         
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject((userPrincipal.getUsername()))
                 .setIssuedAt(new Date())
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
-                .compact();
+                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs));
+        
+        if (stateless) {
+            builder.claim(CLAIM_USER_ID, userPrincipal.getId())
+                    .claim(CLAIM_ROLE, userPrincipal.getRole().name())
+                    .claim(CLAIM_TOKEN_VERSION, userPrincipal.getTokenVersion())
+                    .claim(CLAIM_EMAIL, userPrincipal.getEmail())
+                    .claim(CLAIM_FIRST_NAME, userPrincipal.getFirstName())
+                    .claim(CLAIM_LAST_NAME, userPrincipal.getLastName())
+                    .claim(CLAIM_CUSTOMER_SUPPORT_ID, userPrincipal.getCustomerSupportId());
+        }
+        
+        return builder.signWith(signingKey, SignatureAlgorithm.HS256).compact();
+    }
+    
+    public boolean isStateless() {
+        return stateless;
+    }
+    
+    /**
+     * Builds a principal from the claims of a stateless token, or returns null when the
+     * token was issued without them (e.g. before stateless mode was switched on).
+     */
+    public UserPrincipal getPrincipalFromClaims(Claims claims) {
+        Long userId = claims.get(CLAIM_USER_ID, Long.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        Long tokenVersion = claims.get(CLAIM_TOKEN_VERSION, Long.class);
+        if (userId == null || role == null || tokenVersion == null) {
+            return null;
+        }
+        
+        return new UserPrincipal(
+                userId,
+                claims.getSubject(),
+                claims.get(CLAIM_EMAIL, String.class),
+                null,
+                claims.get(CLAIM_FIRST_NAME, String.class),
+                claims.get(CLAIM_LAST_NAME, String.class),
+                Role.valueOf(role),
+                claims.get(CLAIM_CUSTOMER_SUPPORT_ID, String.class),
+                true,
+                true,
+                true,
+                tokenVersion
+        );
     }
     
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
+        return jwtParser.parseClaimsJws(token)
                 .getBody()
                 .getSubject();
     }
     
+    public String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
     public boolean validateJwtToken(String authToken) {
+        return parseJwtToken(authToken) != null;
+    }
+    
+    /**
+     * Verifies the signature and expiry of a token and returns its claims, or null when the
+     * token is invalid. Callers should use the returned claims rather than parsing again.
+     */
+    public Claims parseJwtToken(String authToken) {
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(authToken);
-            return true;
+            return jwtParser.parseClaimsJws(authToken).getBody();
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
             logger.error("JWT token is expired: {}", e.getMessage());
         } catch (UnsupportedJwtException e) {
             logger.error("JWT token is unsupported: {}", e.getMessage());
+        } catch (SignatureException e) {
+            logger.error("Invalid JWT signature: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
         }
-        return false;
+        return null;
     }
 }
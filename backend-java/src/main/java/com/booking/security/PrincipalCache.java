@@ -0,0 +1,131 @@
+package com.booking.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+
+/**
+ * Bounded, TTL-evicting cache of authenticated principals that sits in front of
+ * {@link CustomUserDetailsService} on the request path. Entries are keyed by username
+ * and by user id and are invalidated whenever a user is updated or deleted.
+ */
+@Component
+public class PrincipalCache {
+    
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${auth.principal-cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${auth.principal-cache.max-size:10000}")
+    private long maxSize;
+    
+    @Value("${auth.principal-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+    
+    private Cache<String, UserPrincipal> byUsername;
+    
+    private Cache<Long, UserPrincipal> byId;
+    
+    @PostConstruct
+    public void init() {
+        byUsername = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, byUsername, "principalCache.byUsername");
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "principalCache.byId");
+    }
+    
+    public UserPrincipal loadByUsername(String username) {
+        if (!enabled) {
+            return (UserPrincipal) userDetailsService.loadUserByUsername(username);
+        }
+        
+        UserPrincipal principal = byUsername.getIfPresent(username);
+        if (principal == null) {
+            principal = (UserPrincipal) userDetailsService.loadUserByUsername(username);
+            put(principal);
+        }
+        return principal;
+    }
+    
+    public UserPrincipal loadById(Long id) {
+        if (!enabled) {
+            return (UserPrincipal) userDetailsService.loadUserById(id);
+        }
+        
+        UserPrincipal principal = byId.getIfPresent(id);
+        if (principal == null) {
+            principal = (UserPrincipal) userDetailsService.loadUserById(id);
+            put(principal);
+        }
+        return principal;
+    }
+    
+    public void invalidate(Long id, String username) {
+        evict(id, username);
+        
+        // A concurrent request may reload the old row before the change commits, so evict again afterwards
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(id, username);
+                }
+            });
+        }
+    }
+    
+    private void evict(Long id, String username) {
+        if (id != null) {
+            UserPrincipal cached = byId.getIfPresent(id);
+            if (cached != null) {
+                byUsername.invalidate(cached.getUsername());
+            }
+            byId.invalidate(id);
+        }
+        if (username != null) {
+            byUsername.invalidate(username);
+        }
+    }
+    
+    public void invalidateAll() {
+        byUsername.invalidateAll();
+        byId.invalidateAll();
+    }
+    
+    public CacheStats getUsernameStats() {
+        return byUsername.stats();
+    }
+    
+    public CacheStats getIdStats() {
+        return byId.stats();
+    }
+    
+    private void put(UserPrincipal principal) {
+        byUsername.put(principal.getUsername(), principal);
+        byId.put(principal.getId(), principal);
+    }
+}
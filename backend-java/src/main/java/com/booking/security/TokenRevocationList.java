@@ -0,0 +1,125 @@
+package com.booking.security;
+
+import com.booking.repository.RevokedTokenRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Digests of tokens revoked before their natural expiry (e.g. on signout). Revocations are kept
+ * in the {@code revoked_tokens} table, so they survive restarts and apply on every node, until
+ * the token would have expired anyway and signature checks reject it.
+ *
+ * <p>Lookups go through a local cache. A revoked digest stays cached until the token expires;
+ * a digest found not revoked is rechecked after {@code jwt.revocation.cache-ttl-seconds}, which
+ * bounds how long a token revoked on another node is still accepted here.
+ */
+@Component
+public class TokenRevocationList {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationList.class);
+    
+    // Cached value for a digest with no revocation row
+    private static final long NOT_REVOKED = 0L;
+    
+    @Autowired
+    private JwtUtils jwtUtils;
+    
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+    
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${jwt.revocation.cache-max-size:100000}")
+    private long cacheMaxSize;
+    
+    @Value("${jwt.revocation.cache-ttl-seconds:30}")
+    private long cacheTtlSeconds;
+    
+    private Cache<String, Long> checked;
+    
+    @PostConstruct
+    public void init() {
+        long cacheTtlNanos = TimeUnit.SECONDS.toNanos(cacheTtlSeconds);
+        checked = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, Long>() {
+                    @Override
+                    public long expireAfterCreate(String key, Long expiresAtMillis, long currentTime) {
+                        if (expiresAtMillis == NOT_REVOKED) {
+                            return cacheTtlNanos;
+                        }
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiresAtMillis - System.currentTimeMillis()));
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String key, Long expiresAtMillis, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, expiresAtMillis, currentTime);
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String key, Long expiresAtMillis, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, checked, "tokenRevocationCache");
+    }
+    
+    public void revoke(String token) {
+        Claims claims = jwtUtils.parseJwtToken(token);
+        if (claims == null || claims.getExpiration() == null) {
+            return;
+        }
+        
+        String digest = jwtUtils.digest(token);
+        long expiresAtMillis = claims.getExpiration().getTime();
+        revokedTokenRepository.revokeIfMissing(digest,
+                LocalDateTime.ofInstant(claims.getExpiration().toInstant(), ZoneId.systemDefault()));
+        checked.put(digest, expiresAtMillis);
+        verifiedTokenCache.invalidate(digest);
+    }
+    
+    public boolean isRevoked(String digest) {
+        return checked.get(digest, this::loadExpiry) != NOT_REVOKED;
+    }
+    
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval-ms:3600000}",
+               initialDelayString = "${jwt.revocation.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        try {
+            int purged = revokedTokenRepository.deleteExpiredBefore(LocalDateTime.now());
+            if (purged > 0) {
+                logger.info("Purged {} expired token revocations", purged);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to purge expired token revocations", e);
+        }
+    }
+    
+    private Long loadExpiry(String digest) {
+        return revokedTokenRepository.findExpiresAtByTokenDigest(digest)
+                .map(expiresAt -> expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())
+                .orElse(NOT_REVOKED);
+    }
+}
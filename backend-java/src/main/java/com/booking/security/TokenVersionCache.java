@@ -0,0 +1,66 @@
+package com.booking.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+
+/**
+ * Last known token version per user id. Stateless tokens whose version matches are trusted
+ * without a user lookup; a miss or a mismatch sends the request back to the database.
+ */
+@Component
+public class TokenVersionCache {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${jwt.stateless.version-cache-max-size:100000}")
+    private long maxSize;
+    
+    @Value("${jwt.stateless.version-cache-ttl-seconds:60}")
+    private long ttlSeconds;
+    
+    private Cache<Long, Long> versions;
+    
+    @PostConstruct
+    public void init() {
+        versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "tokenVersionCache");
+    }
+    
+    public boolean isCurrent(Long userId, Long tokenVersion) {
+        Long current = versions.getIfPresent(userId);
+        return current != null && current.equals(tokenVersion);
+    }
+    
+    public void record(Long userId, Long tokenVersion) {
+        versions.put(userId, tokenVersion);
+    }
+    
+    public void invalidate(Long userId) {
+        versions.invalidate(userId);
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.invalidate(userId);
+                }
+            });
+        }
+    }
+}
@@ -23,10 +23,12 @@ public class UserPrincipal implements UserDetails {
     private Boolean enabled;
     private Boolean accountNonLocked;
     private Boolean credentialsNonExpired;
+    private Long tokenVersion;
     
     public UserPrincipal(Long id, String username, String email, String password, 
                         String firstName, String lastName, Role role, String customerSupportId,
-                        Boolean enabled, Boolean accountNonLocked, Boolean credentialsNonExpired) {
+                        Boolean enabled, Boolean accountNonLocked, Boolean credentialsNonExpired,
+                        Long tokenVersion) {
         this.id = id;
         this.username = username;
         this.email = email;
@@ -38,6 +40,7 @@ public class UserPrincipal implements UserDetails {
         this.enabled = enabled;
         this.accountNonLocked = accountNonLocked;
         this.credentialsNonExpired = credentialsNonExpired;
+        this.tokenVersion = tokenVersion;
     }
     
     public static UserPrincipal create(User user) {
@@ -52,7 +55,8 @@ public class UserPrincipal implements UserDetails {
                 user.getCustomerSupportId(),
                 user.getEnabled(),
                 user.getAccountNonLocked(),
-                user.getCredentialsNonExpired()
+                user.getCredentialsNonExpired(),
+                user.getTokenVersion() != null ? user.getTokenVersion() : 0L
         );
     }
     
@@ -116,6 +120,10 @@ public class UserPrincipal implements UserDetails {
         return customerSupportId;
     }
     
+    public Long getTokenVersion() {
+        return tokenVersion;
+    }
+    
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
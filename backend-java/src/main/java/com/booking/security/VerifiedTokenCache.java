@@ -0,0 +1,119 @@
+package com.booking.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in cache of bearer tokens that already passed signature verification, keyed by token
+ * digest. Each entry lives no longer than the token's own expiry (capped by max-ttl-seconds),
+ * so a repeat request skips both HMAC verification and the principal load. A hit is only used
+ * while {@link TokenVersionCache} still holds the cached principal's token version.
+ */
+@Component
+public class VerifiedTokenCache {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${jwt.verified-cache.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${jwt.verified-cache.max-size:50000}")
+    private long maxSize;
+    
+    @Value("${jwt.verified-cache.max-ttl-seconds:300}")
+    private long maxTtlSeconds;
+    
+    private Cache<String, VerifiedToken> tokens;
+    
+    @PostConstruct
+    public void init() {
+        long maxTtlNanos = TimeUnit.SECONDS.toNanos(maxTtlSeconds);
+        tokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        long remaining = TimeUnit.MILLISECONDS.toNanos(value.expiresAtMillis - System.currentTimeMillis());
+                        return Math.max(0, Math.min(remaining, maxTtlNanos));
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, tokens, "verifiedTokenCache");
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public UserPrincipal get(String digest) {
+        if (!enabled) {
+            return null;
+        }
+        
+        VerifiedToken token = tokens.getIfPresent(digest);
+        return token != null ? token.principal : null;
+    }
+    
+    public void put(String digest, UserPrincipal principal, Date expiration) {
+        if (enabled && expiration != null) {
+            tokens.put(digest, new VerifiedToken(principal, expiration.getTime()));
+        }
+    }
+    
+    public void invalidate(String digest) {
+        tokens.invalidate(digest);
+    }
+    
+    public void invalidateUser(Long userId) {
+        evictUser(userId);
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictUser(userId);
+                }
+            });
+        }
+    }
+    
+    private void evictUser(Long userId) {
+        tokens.asMap().values().removeIf(token -> token.principal.getId().equals(userId));
+    }
+    
+    private static class VerifiedToken {
+        
+        private final UserPrincipal principal;
+        private final long expiresAtMillis;
+        
+        VerifiedToken(UserPrincipal principal, long expiresAtMillis) {
+            this.principal = principal;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -66,6 +66,8 @@ public class WebSecurityConfig {
                     .requestMatchers("/api/oauth2/**").permitAll()
                     .requestMatchers("/api/stripe/**").permitAll()
                     .requestMatchers("/api/ai/**").permitAll()
+                    // The handshake authenticates itself, also from a query parameter token
+                    .requestMatchers("/ws/**").permitAll()
                     .requestMatchers("/api/admin/**").hasRole("ADMIN")
                     .requestMatchers("/api/business/**").hasAnyRole("ADMIN", "BUSINESS")
                     .requestMatchers("/api/customer/**").hasAnyRole("ADMIN", "CUSTOMER")
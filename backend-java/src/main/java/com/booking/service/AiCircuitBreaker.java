@@ -0,0 +1,187 @@
+package com.booking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker with half-open probing plus a concurrency bulkhead around calls to the AI
+ * backend. While the circuit is open, or when the bulkhead is full, callers get the fallback
+ * immediately instead of waiting out a socket timeout.
+ */
+@Component
+public class AiCircuitBreaker {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AiCircuitBreaker.class);
+    
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${ai.circuit-breaker.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+    
+    @Value("${ai.circuit-breaker.window-size:20}")
+    private int windowSize;
+    
+    @Value("${ai.circuit-breaker.minimum-calls:10}")
+    private int minimumCalls;
+    
+    @Value("${ai.circuit-breaker.open-duration-ms:30000}")
+    private long openDurationMs;
+    
+    @Value("${ai.circuit-breaker.half-open-probes:3}")
+    private int halfOpenProbes;
+    
+    @Value("${ai.circuit-breaker.max-concurrent-calls:16}")
+    private int maxConcurrentCalls;
+    
+    private State state = State.CLOSED;
+    private long openedAtMillis;
+    private int probesInFlight;
+    private int probeSuccesses;
+    
+    // Ring buffer of the outcomes of the last windowSize calls
+    private boolean[] failures;
+    private int windowPosition;
+    private int windowCount;
+    private int windowFailures;
+    
+    private Semaphore bulkhead;
+    
+    private Timer latency;
+    private Counter openRejections;
+    private Counter bulkheadRejections;
+    
+    @PostConstruct
+    public void init() {
+        failures = new boolean[windowSize];
+        bulkhead = new Semaphore(maxConcurrentCalls);
+        
+        latency = Timer.builder("ai.backend.latency")
+                .description("Latency of calls to the AI backend admitted by the circuit breaker")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        openRejections = Counter.builder("ai.circuit-breaker.rejections")
+                .tag("reason", "open")
+                .register(meterRegistry);
+        bulkheadRejections = Counter.builder("ai.circuit-breaker.rejections")
+                .tag("reason", "bulkhead")
+                .register(meterRegistry);
+        Gauge.builder("ai.circuit-breaker.state", this, breaker -> breaker.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half-open")
+                .register(meterRegistry);
+        Gauge.builder("ai.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Runs {@code call} if the circuit and bulkhead admit it, otherwise returns the fallback.
+     * Any exception from {@code call} counts as a failure and also yields the fallback.
+     */
+    public <T> T execute(Supplier<T> call, Supplier<T> fallback) {
+        boolean probe;
+        synchronized (this) {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAtMillis >= openDurationMs) {
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.OPEN || (state == State.HALF_OPEN && probesInFlight >= halfOpenProbes)) {
+                openRejections.increment();
+                return fallback.get();
+            }
+            probe = state == State.HALF_OPEN;
+            if (probe) {
+                probesInFlight++;
+            }
+        }
+        
+        if (!bulkhead.tryAcquire()) {
+            bulkheadRejections.increment();
+            if (probe) {
+                synchronized (this) {
+                    probesInFlight--;
+                }
+            }
+            return fallback.get();
+        }
+        
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            record(true, probe);
+            return result;
+        } catch (RuntimeException e) {
+            logger.warn("AI backend call failed: {}", e.getMessage());
+            record(false, probe);
+            return fallback.get();
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            bulkhead.release();
+        }
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+    
+    private synchronized void record(boolean success, boolean probe) {
+        if (probe) {
+            probesInFlight--;
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            if (!success) {
+                transitionTo(State.OPEN);
+            } else if (++probeSuccesses >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        
+        if (failures[windowPosition]) {
+            windowFailures--;
+        }
+        failures[windowPosition] = !success;
+        if (!success) {
+            windowFailures++;
+        }
+        windowPosition = (windowPosition + 1) % windowSize;
+        windowCount = Math.min(windowCount + 1, windowSize);
+        
+        if (state == State.CLOSED && windowCount >= minimumCalls
+                && windowFailures * 100 >= failureRateThreshold * windowCount) {
+            transitionTo(State.OPEN);
+        }
+    }
+    
+    private void transitionTo(State newState) {
+        logger.info("AI circuit breaker {} -> {}", state, newState);
+        state = newState;
+        probeSuccesses = 0;
+        if (newState == State.OPEN) {
+            openedAtMillis = System.currentTimeMillis();
+        }
+        if (newState == State.CLOSED) {
+            failures = new boolean[windowSize];
+            windowPosition = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+    }
+}
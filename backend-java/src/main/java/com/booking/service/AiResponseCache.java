@@ -0,0 +1,93 @@
+package com.booking.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Optional cache of AI answers to FAQ-style questions, keyed on a normalized form of the
+ * user message. Messages that look session-specific (digits, e-mail addresses, long text)
+ * are never cached, and callers only consult it for the opening message of a conversation.
+ */
+@Component
+public class AiResponseCache {
+    
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\s']+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern SESSION_SPECIFIC = Pattern.compile("[\\d@]");
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${ai.response-cache.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${ai.response-cache.max-size:5000}")
+    private long maxSize;
+    
+    @Value("${ai.response-cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+    
+    @Value("${ai.response-cache.max-message-length:200}")
+    private int maxMessageLength;
+    
+    private Cache<String, String> answers;
+    
+    @PostConstruct
+    public void init() {
+        answers = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, answers, "aiResponseCache");
+    }
+    
+    /**
+     * Returns the cache key for a message, or null if caching is disabled or the message
+     * depends on the session.
+     */
+    public String keyFor(String userMessage) {
+        if (!enabled || userMessage == null || userMessage.length() > maxMessageLength
+                || SESSION_SPECIFIC.matcher(userMessage).find()) {
+            return null;
+        }
+        
+        String normalized = NON_WORD.matcher(userMessage.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        return normalized.isEmpty() ? null : normalized;
+    }
+    
+    public String get(String key) {
+        return key != null ? answers.getIfPresent(key) : null;
+    }
+    
+    public void put(String key, String answer) {
+        if (key != null) {
+            answers.put(key, answer);
+        }
+    }
+    
+    public void invalidateAll() {
+        answers.invalidateAll();
+    }
+    
+    public long size() {
+        return answers.estimatedSize();
+    }
+    
+    public CacheStats stats() {
+        return answers.stats();
+    }
+}
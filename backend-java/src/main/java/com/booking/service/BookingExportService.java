@@ -0,0 +1,98 @@
+package com.booking.service;
+
+import com.booking.entity.BookingStatus;
+import com.booking.payload.response.BookingResponse;
+import com.booking.repository.BookingRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes bookings straight from a database cursor to the response. Rows are DTO projections,
+ * so nothing accumulates in the persistence context and heap use stays flat however many
+ * rows are exported.
+ */
+@Service
+@Transactional(readOnly = true)
+public class BookingExportService {
+    
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+    
+    private static final int FLUSH_EVERY_ROWS = 500;
+    
+    private static final String CSV_HEADER = "id,userId,bookingDateTime,durationMinutes,serviceName,"
+            + "serviceDescription,price,status,notes,stripePaymentIntentId,holdExpiresAt,createdAt,updatedAt";
+    
+    @Autowired
+    private BookingRepository bookingRepository;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    public long export(OutputStream out, Format format, LocalDateTime from, LocalDateTime to,
+                       BookingStatus status) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        
+        long rows = 0;
+        try (Stream<BookingResponse> bookings = bookingRepository.streamForExport(from, to, status)) {
+            Iterator<BookingResponse> iterator = bookings.iterator();
+            while (iterator.hasNext()) {
+                BookingResponse booking = iterator.next();
+                if (format == Format.CSV) {
+                    writeCsvRow(writer, booking);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(booking));
+                }
+                writer.write('\n');
+                
+                if (++rows % FLUSH_EVERY_ROWS == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+        return rows;
+    }
+    
+    private void writeCsvRow(Writer writer, BookingResponse booking) throws IOException {
+        Object[] values = {
+            booking.getId(), booking.getUserId(), booking.getBookingDateTime(), booking.getDurationMinutes(),
+            booking.getServiceName(), booking.getServiceDescription(), booking.getPrice(), booking.getStatus(),
+            booking.getNotes(), booking.getStripePaymentIntentId(), booking.getHoldExpiresAt(), booking.getCreatedAt(),
+            booking.getUpdatedAt()
+        };
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(csvField(values[i].toString()));
+            }
+        }
+    }
+    
+    private String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
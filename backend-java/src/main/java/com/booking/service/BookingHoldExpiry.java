@@ -0,0 +1,220 @@
+package com.booking.service;
+
+import com.booking.entity.BookingStatus;
+import com.booking.repository.BookingRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Releases checkout holds (PENDING bookings with a hold expiry) when they lapse. Deadlines sit
+ * in a {@link TimerWheel} advanced by a single ticker thread, so open holds cost nothing until
+ * they expire, and each tick's expired holds are released together with one UPDATE per batch.
+ *
+ * <p>A hold is timed only on the node that created it. Every {@code sweep-interval-ms} each
+ * node also releases holds that have been expired for longer than that interval, which covers
+ * holds whose node went away. Other nodes' slot indexes learn of a release when they next
+ * reload the day; see {@link BookingSlotIndex}.
+ */
+@Component
+public class BookingHoldExpiry {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BookingHoldExpiry.class);
+    
+    private static final long RETRY_DELAY_MS = 30000;
+    
+    @Autowired
+    private BookingRepository bookingRepository;
+    
+    @Autowired
+    private BookingSlotIndex slotIndex;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${booking.holds.tick-ms:1000}")
+    private long tickMs;
+    
+    @Value("${booking.holds.wheel-size:64}")
+    private int wheelSize;
+    
+    @Value("${booking.holds.wheel-levels:3}")
+    private int wheelLevels;
+    
+    @Value("${booking.holds.release-batch-size:500}")
+    private int releaseBatchSize;
+    
+    @Value("${booking.holds.sweep-interval-ms:60000}")
+    private long sweepIntervalMs;
+    
+    private TimerWheel wheel;
+    
+    private ScheduledExecutorService ticker;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    private Counter released;
+    
+    @PostConstruct
+    public void init() {
+        wheel = new TimerWheel(tickMs, wheelSize, wheelLevels, System.currentTimeMillis());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        released = Counter.builder("booking.holds.released")
+                .description("Checkout holds released because they expired")
+                .register(meterRegistry);
+        Gauge.builder("booking.holds.open", this, expiry -> expiry.openHolds())
+                .register(meterRegistry);
+        
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booking-hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    // Holds survive restarts in the database; put every open one back on the wheel
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        List<Object[]> holds = bookingRepository.findOpenHolds(BookingStatus.PENDING);
+        synchronized (this) {
+            for (Object[] hold : holds) {
+                wheel.schedule((Long) hold[0], toMillis((LocalDateTime) hold[1]));
+            }
+        }
+        logger.info("Scheduled expiry of {} open booking holds", holds.size());
+        ticker.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        ticker.scheduleWithFixedDelay(this::sweep, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+    
+    /**
+     * Schedules the hold's release once the current transaction commits.
+     */
+    public void scheduleAfterCommit(Long bookingId, LocalDateTime expiresAt) {
+        afterCommit(() -> {
+            synchronized (this) {
+                wheel.schedule(bookingId, toMillis(expiresAt));
+            }
+        });
+    }
+    
+    /**
+     * Drops the hold's timer once the current transaction commits, after the hold was
+     * confirmed or cancelled.
+     */
+    public void cancelAfterCommit(Long bookingId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                wheel.cancel(bookingId);
+            }
+        });
+    }
+    
+    private synchronized int openHolds() {
+        return wheel.size();
+    }
+    
+    private void tick() {
+        List<Long> expired;
+        synchronized (this) {
+            expired = wheel.advance(System.currentTimeMillis());
+        }
+        for (int from = 0; from < expired.size(); from += releaseBatchSize) {
+            List<Long> batch = expired.subList(from, Math.min(from + releaseBatchSize, expired.size()));
+            try {
+                release(batch);
+            } catch (RuntimeException e) {
+                logger.error("Failed to release {} expired booking holds, retrying", batch.size(), e);
+                long retryAt = System.currentTimeMillis() + RETRY_DELAY_MS;
+                synchronized (this) {
+                    batch.forEach(bookingId -> wheel.schedule(bookingId, retryAt));
+                }
+            }
+        }
+    }
+    
+    // Gives the node timing a hold a sweep interval to release it before any node steps in
+    private void sweep() {
+        try {
+            List<Long> expired;
+            do {
+                expired = bookingRepository.findExpiredHoldIds(BookingStatus.PENDING,
+                        LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(sweepIntervalMs)),
+                        PageRequest.ofSize(releaseBatchSize));
+                if (!expired.isEmpty()) {
+                    release(expired);
+                    synchronized (this) {
+                        expired.forEach(wheel::cancel);
+                    }
+                }
+            } while (expired.size() == releaseBatchSize);
+        } catch (RuntimeException e) {
+            logger.error("Failed to sweep expired booking holds", e);
+        }
+    }
+    
+    private void release(List<Long> bookingIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            int count = bookingRepository.releaseExpiredHolds(bookingIds, BookingStatus.PENDING,
+                    BookingStatus.CANCELLED, now);
+            released.increment(count);
+            
+            // Any id that no longer holds its slot leaves the index, including one cancelled meanwhile
+            Set<Long> stillActive = new HashSet<>(
+                    bookingRepository.findIdsByIdInAndStatusIn(bookingIds, BookingSlotIndex.ACTIVE_STATUSES));
+            for (Long bookingId : bookingIds) {
+                if (!stillActive.contains(bookingId)) {
+                    slotIndex.removeAfterCommit(bookingId);
+                }
+            }
+        });
+    }
+    
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
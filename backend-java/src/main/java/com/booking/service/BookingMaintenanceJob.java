@@ -0,0 +1,199 @@
+package com.booking.service;
+
+import com.booking.entity.BookingStatus;
+import com.booking.repository.BookingRepository;
+import com.booking.repository.BookingTombstoneRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Periodically moves finished CONFIRMED/RESCHEDULED bookings to COMPLETED and cancels stale
+ * PENDING ones: holds past their expiry and unpaid bookings whose start has passed. Booking
+ * tombstones older than the delta-sync retention are purged at the end of each run.
+ *
+ * <p>Work is done in chunks of {@code booking.maintenance.chunk-size} rows, each selected by
+ * a keyset range and updated by one guarded UPDATE in its own short transaction, so row locks
+ * are held only for the duration of a chunk. The keyset position is checkpointed after every
+ * chunk; a run that reaches {@code max-chunks-per-run} stops and the next run resumes there.
+ */
+@Component
+public class BookingMaintenanceJob {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BookingMaintenanceJob.class);
+    
+    private static final Set<BookingStatus> COMPLETABLE_STATUSES =
+            EnumSet.of(BookingStatus.CONFIRMED, BookingStatus.RESCHEDULED);
+    
+    private static final List<String> COMPLETABLE_STATUS_NAMES =
+            COMPLETABLE_STATUSES.stream().map(BookingStatus::name).toList();
+    
+    private static final LocalDateTime SCAN_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    
+    @Autowired
+    private BookingRepository bookingRepository;
+    
+    @Autowired
+    private BookingTombstoneRepository bookingTombstoneRepository;
+    
+    @Autowired
+    private BookingSlotIndex slotIndex;
+    
+    @Autowired
+    private BookingHoldExpiry holdExpiry;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${booking.maintenance.chunk-size:500}")
+    private int chunkSize;
+    
+    @Value("${booking.maintenance.max-chunks-per-run:200}")
+    private int maxChunksPerRun;
+    
+    @Value("${booking.maintenance.chunk-pause-ms:50}")
+    private long chunkPauseMs;
+    
+    @Value("${booking.sync.tombstone-retention-days:30}")
+    private long tombstoneRetentionDays;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    // Checkpoints: keyset position of the last processed row, reset once a scan reaches the end
+    private LocalDateTime completionAfterTime = SCAN_START;
+    private long completionAfterId;
+    private long expiryAfterId;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    @Scheduled(fixedDelayString = "${booking.maintenance.interval-ms:300000}",
+               initialDelayString = "${booking.maintenance.initial-delay-ms:60000}")
+    public synchronized void run() {
+        int chunks = 0;
+        int completed = 0;
+        int expired = 0;
+        try {
+            while (chunks < maxChunksPerRun) {
+                Integer count = transactionTemplate.execute(status -> completeChunk());
+                chunks++;
+                if (count == null) {
+                    break;
+                }
+                completed += count;
+                pause();
+            }
+            while (chunks < maxChunksPerRun) {
+                Integer count = transactionTemplate.execute(status -> expireChunk());
+                chunks++;
+                if (count == null) {
+                    break;
+                }
+                expired += count;
+                pause();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Booking maintenance run failed after {} chunks", chunks, e);
+        }
+        
+        try {
+            Integer purged = transactionTemplate.execute(status -> bookingTombstoneRepository.deleteOlderThan(
+                    LocalDateTime.now().minusDays(tombstoneRetentionDays)));
+            if (purged != null && purged > 0) {
+                logger.info("Booking maintenance: purged {} booking tombstones", purged);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to purge booking tombstones", e);
+        }
+        
+        if (completed > 0 || expired > 0) {
+            logger.info("Booking maintenance: {} completed, {} expired in {} chunks", completed, expired, chunks);
+        }
+    }
+    
+    // Returns the number of bookings completed, or null once the scan has reached the end
+    private Integer completeChunk() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> started = bookingRepository.findStartedAfter(COMPLETABLE_STATUSES, now,
+                completionAfterTime, completionAfterId, PageRequest.ofSize(chunkSize));
+        if (started.isEmpty()) {
+            completionAfterTime = SCAN_START;
+            completionAfterId = 0;
+            return null;
+        }
+        
+        List<Long> finished = new ArrayList<>();
+        for (Object[] row : started) {
+            LocalDateTime start = (LocalDateTime) row[1];
+            if (!start.plusMinutes((Integer) row[2]).isAfter(now)) {
+                finished.add((Long) row[0]);
+            }
+        }
+        int count = finished.isEmpty() ? 0 : bookingRepository.completeFinished(finished, COMPLETABLE_STATUS_NAMES,
+                BookingStatus.COMPLETED.name(), now);
+        removeInactive(finished);
+        
+        // Bookings still in progress are passed over; they are picked up once the scan starts again
+        Object[] last = started.get(started.size() - 1);
+        completionAfterTime = (LocalDateTime) last[1];
+        completionAfterId = (Long) last[0];
+        return count;
+    }
+    
+    private Integer expireChunk() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> stale = bookingRepository.findStalePendingIds(BookingStatus.PENDING, now, expiryAfterId,
+                PageRequest.ofSize(chunkSize));
+        if (stale.isEmpty()) {
+            expiryAfterId = 0;
+            return null;
+        }
+        
+        int count = bookingRepository.cancelStalePending(stale, BookingStatus.PENDING,
+                BookingStatus.CANCELLED, now);
+        removeInactive(stale);
+        for (Long bookingId : stale) {
+            holdExpiry.cancelAfterCommit(bookingId);
+        }
+        expiryAfterId = stale.get(stale.size() - 1);
+        return count;
+    }
+    
+    // The UPDATEs skip rows changed since they were selected; those keep their place in the index
+    private void removeInactive(List<Long> bookingIds) {
+        if (bookingIds.isEmpty()) {
+            return;
+        }
+        Set<Long> stillActive = new HashSet<>(
+                bookingRepository.findIdsByIdInAndStatusIn(bookingIds, BookingSlotIndex.ACTIVE_STATUSES));
+        for (Long bookingId : bookingIds) {
+            if (!stillActive.contains(bookingId)) {
+                slotIndex.removeAfterCommit(bookingId);
+            }
+        }
+    }
+    
+    private void pause() throws InterruptedException {
+        if (chunkPauseMs > 0) {
+            Thread.sleep(chunkPauseMs);
+        }
+    }
+}
@@ -2,16 +2,34 @@ package com.booking.service;
 
 import com.booking.entity.Booking;
 import com.booking.entity.BookingStatus;
+import com.booking.entity.BookingTombstone;
 import com.booking.entity.User;
+import com.booking.payload.request.BookingRequest;
+import com.booking.payload.request.PageCursor;
+import com.booking.payload.response.BookingChangesResponse;
+import com.booking.payload.response.BookingResponse;
+import com.booking.payload.response.FreeSlotResponse;
 import com.booking.repository.BookingRepository;
+import com.booking.repository.BookingTombstoneRepository;
+import com.booking.repository.ListingVersion;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 @Service
 @Transactional
@@ -20,16 +38,257 @@ public class BookingService {
     @Autowired
     private BookingRepository bookingRepository;
     
+    @Autowired
+    private BookingTombstoneRepository bookingTombstoneRepository;
+    
+    @Autowired
+    private BookingSlotIndex slotIndex;
+    
+    @Autowired
+    private BookingHoldExpiry holdExpiry;
+    
+    @Value("${booking.holds.ttl-seconds:600}")
+    private long holdTtlSeconds;
+    
+    @Value("${booking.sync.watermark-lag-seconds:5}")
+    private long watermarkLagSeconds;
+    
+    @Value("${booking.sync.tombstone-retention-days:30}")
+    private long tombstoneRetentionDays;
+    
+    // Statuses a customer may still cancel or reschedule from
+    private static final Set<BookingStatus> MODIFIABLE_STATUSES = BookingSlotIndex.ACTIVE_STATUSES;
+    
     public Booking createBooking(User user, LocalDateTime bookingDateTime, 
                                 Integer durationMinutes, String serviceName, 
                                 String serviceDescription, BigDecimal price) {
+        LocalDateTime end = reserveSlot(bookingDateTime, durationMinutes, null);
         Booking booking = new Booking(user, bookingDateTime, durationMinutes, 
                                     serviceName, serviceDescription, price);
-        return bookingRepository.save(booking);
+        booking = bookingRepository.save(booking);
+        slotIndex.putAfterCommit(booking.getId(), bookingDateTime, end);
+        return booking;
+    }
+    
+    /**
+     * Reserves the slot as a PENDING checkout hold that is released automatically unless payment
+     * confirms it within {@code booking.holds.ttl-seconds}.
+     */
+    public Booking createHold(User user, LocalDateTime bookingDateTime, 
+                              Integer durationMinutes, String serviceName, 
+                              String serviceDescription, BigDecimal price) {
+        LocalDateTime end = reserveSlot(bookingDateTime, durationMinutes, null);
+        Booking booking = new Booking(user, bookingDateTime, durationMinutes, 
+                                    serviceName, serviceDescription, price);
+        booking.setStatus(BookingStatus.PENDING);
+        // Whole seconds, so the stored value is never rounded past the moment the wheel fires
+        booking.setHoldExpiresAt(LocalDateTime.now().plusSeconds(holdTtlSeconds).withNano(0));
+        booking = bookingRepository.save(booking);
+        slotIndex.putAfterCommit(booking.getId(), bookingDateTime, end);
+        holdExpiry.scheduleAfterCommit(booking.getId(), booking.getHoldExpiresAt());
+        return booking;
+    }
+    
+    public Optional<Booking> findHold(Long bookingId, Long userId) {
+        return bookingRepository.findByIdAndUserIdAndStatus(bookingId, userId, BookingStatus.PENDING);
+    }
+    
+    public boolean isPaymentOfUser(String paymentIntentId, Long userId) {
+        return bookingRepository.existsByStripePaymentIntentIdAndUserId(paymentIntentId, userId);
+    }
+    
+    public boolean attachPaymentIntent(Long bookingId, Long userId, String paymentIntentId) {
+        return bookingRepository.attachPaymentIntentToHold(bookingId, userId, paymentIntentId,
+                BookingStatus.PENDING, LocalDateTime.now()) == 1;
+    }
+    
+    /**
+     * Turns the hold paid for by {@code paymentIntentId} into a confirmed booking. Returns false
+     * if there is no such hold left, for example because it already expired.
+     */
+    public boolean confirmHold(String paymentIntentId) {
+        Optional<Booking> booking = bookingRepository.findByStripePaymentIntentId(paymentIntentId);
+        if (booking.isEmpty() || bookingRepository.resolveHold(booking.get().getId(), BookingStatus.PENDING,
+                BookingStatus.CONFIRMED, LocalDateTime.now()) == 0) {
+            return false;
+        }
+        holdExpiry.cancelAfterCommit(booking.get().getId());
+        return true;
     }
     
-    public List<Booking> getUserBookings(User user) {
-        return bookingRepository.findByUser(user);
+    public boolean releaseHold(String paymentIntentId) {
+        Optional<Booking> booking = bookingRepository.findByStripePaymentIntentId(paymentIntentId);
+        if (booking.isEmpty() || bookingRepository.resolveHold(booking.get().getId(), BookingStatus.PENDING,
+                BookingStatus.CANCELLED, LocalDateTime.now()) == 0) {
+            return false;
+        }
+        slotIndex.removeAfterCommit(booking.get().getId());
+        holdExpiry.cancelAfterCommit(booking.get().getId());
+        return true;
+    }
+    
+    /**
+     * Creates all bookings in one transaction, or none of them. The whole batch is validated
+     * and checked for conflicts, among itself and with existing bookings, before anything is
+     * written; inserts then go to the database in JDBC batches.
+     */
+    public List<Booking> createBookings(User user, List<BookingRequest> requests) {
+        List<Booking> bookings = new ArrayList<>(requests.size());
+        for (BookingRequest request : requests) {
+            Booking booking = new Booking(user, request.getBookingDateTime(), request.getDurationMinutes(),
+                                          request.getServiceName(), request.getServiceDescription(),
+                                          request.getPrice());
+            booking.setNotes(request.getNotes());
+            bookings.add(booking);
+        }
+        bookings.sort(Comparator.comparing(Booking::getBookingDateTime));
+        
+        Set<LocalDate> days = new TreeSet<>();
+        LocalDateTime previousEnd = null;
+        for (Booking booking : bookings) {
+            if (booking.getDurationMinutes() > slotIndex.getMaxDurationMinutes()) {
+                throw new IllegalArgumentException("Booking duration exceeds "
+                        + slotIndex.getMaxDurationMinutes() + " minutes");
+            }
+            if (previousEnd != null && booking.getBookingDateTime().isBefore(previousEnd)) {
+                throw new IllegalArgumentException("Bookings in the batch overlap at " + booking.getBookingDateTime());
+            }
+            previousEnd = endOf(booking);
+            days.addAll(BookingSlotIndex.daysOf(booking.getBookingDateTime(), previousEnd));
+        }
+        slotIndex.lockDays(days);
+        
+        // The index may lag behind other instances, so a conflict it reports is confirmed below
+        boolean indexedFree = true;
+        for (Booking booking : bookings) {
+            indexedFree &= slotIndex.isFree(booking.getBookingDateTime(), endOf(booking), null);
+        }
+        
+        // One locking range query for the whole batch; keyed by start with the running maximum
+        // end, so a floor lookup sees any earlier booking that reaches into a requested slot
+        TreeMap<LocalDateTime, LocalDateTime> existing = new TreeMap<>();
+        LocalDateTime reach = null;
+        List<Booking> candidates = bookingRepository.lockStartingBetween(
+                bookings.get(0).getBookingDateTime().minusMinutes(slotIndex.getMaxDurationMinutes()),
+                previousEnd, BookingSlotIndex.ACTIVE_STATUSES);
+        candidates.sort(Comparator.comparing(Booking::getBookingDateTime));
+        for (Booking other : candidates) {
+            LocalDateTime otherEnd = endOf(other);
+            reach = reach == null || otherEnd.isAfter(reach) ? otherEnd : reach;
+            existing.put(other.getBookingDateTime(), reach);
+        }
+        for (Booking booking : bookings) {
+            LocalDateTime start = booking.getBookingDateTime();
+            Map.Entry<LocalDateTime, LocalDateTime> before = existing.floorEntry(start);
+            LocalDateTime after = existing.higherKey(start);
+            if ((before != null && before.getValue().isAfter(start))
+                    || (after != null && after.isBefore(endOf(booking)))) {
+                if (indexedFree) {
+                    slotIndex.reload(days);
+                }
+                throw new IllegalStateException("Requested time slot " + start + " is not available");
+            }
+        }
+        if (!indexedFree) {
+            slotIndex.reload(days);
+        }
+        
+        List<Booking> saved = bookingRepository.saveAll(bookings);
+        for (Booking booking : saved) {
+            slotIndex.putAfterCommit(booking.getId(), booking.getBookingDateTime(), endOf(booking));
+        }
+        return saved;
+    }
+    
+    private static LocalDateTime endOf(Booking booking) {
+        return booking.getBookingDateTime().plusMinutes(booking.getDurationMinutes());
+    }
+    
+    /**
+     * Locks the days of {@code [start, start + duration)} for the rest of the transaction and
+     * fails unless the slot is free. The locking range query is the arbiter across application
+     * instances; the in-memory index may lag behind changes made on other instances, so when
+     * the two disagree the index reloads the days concerned.
+     */
+    private LocalDateTime reserveSlot(LocalDateTime start, Integer durationMinutes, Long excludeBookingId) {
+        if (durationMinutes > slotIndex.getMaxDurationMinutes()) {
+            throw new IllegalArgumentException("Booking duration exceeds "
+                    + slotIndex.getMaxDurationMinutes() + " minutes");
+        }
+        LocalDateTime end = start.plusMinutes(durationMinutes);
+        slotIndex.lockSlot(start, end);
+        
+        boolean indexedFree = slotIndex.isFree(start, end, excludeBookingId);
+        boolean free = true;
+        List<Booking> candidates = bookingRepository.lockStartingBetween(
+                start.minusMinutes(slotIndex.getMaxDurationMinutes()), end, BookingSlotIndex.ACTIVE_STATUSES);
+        for (Booking other : candidates) {
+            if (!other.getId().equals(excludeBookingId)
+                    && other.getBookingDateTime().plusMinutes(other.getDurationMinutes()).isAfter(start)) {
+                free = false;
+                break;
+            }
+        }
+        if (free != indexedFree) {
+            slotIndex.reload(BookingSlotIndex.daysOf(start, end));
+        }
+        if (!free) {
+            throw new IllegalStateException("Requested time slot is not available");
+        }
+        return end;
+    }
+    
+    @Transactional(readOnly = true)
+    public ListingVersion getUserBookingsVersion(Long userId) {
+        ListingVersion version = bookingRepository.findListingVersionByUserId(userId);
+        
+        // A deleted row takes its updated_at with it, so deletions advance the listing by their tombstones
+        LocalDateTime lastDeleted = bookingTombstoneRepository.findLastDeletedAtByUserId(userId);
+        LocalDateTime lastModified = version.getLastModified();
+        if (lastDeleted == null || (lastModified != null && !lastDeleted.isAfter(lastModified))) {
+            return version;
+        }
+        return ListingVersion.of(version.getCount(), version.getMaxId(), lastDeleted);
+    }
+    
+    /**
+     * One keyset page of a user's bookings, newest booking time first. Pass the cursor of the
+     * last row of the previous page, or null for the first page.
+     */
+    @Transactional(readOnly = true)
+    public List<BookingResponse> getUserBookingsPage(Long userId, PageCursor cursor, int limit) {
+        PageRequest page = PageRequest.ofSize(limit);
+        if (cursor == null) {
+            return bookingRepository.findFirstPageByUserId(userId, page);
+        }
+        return bookingRepository.findPageByUserIdBefore(userId, cursor.getTimestamp(), cursor.getId(), page);
+    }
+    
+    // Answered from the in-memory occupancy bitmaps; no transaction or query unless a day is cold
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<FreeSlotResponse> getFreeSlots(LocalDate from, LocalDate to, int minDurationMinutes) {
+        return slotIndex.findFreeSlots(from, to, minDurationMinutes);
+    }
+    
+    /**
+     * Bookings of the user created, updated or cancelled after {@code since}, plus the ids of
+     * bookings deleted since then. A missing watermark, or one older than the tombstone
+     * retention, gets the full list instead. The returned watermark trails the current time by
+     * {@code booking.sync.watermark-lag-seconds} so that rows committed late with an earlier
+     * updatedAt are delivered again next time; clients apply changes idempotently.
+     */
+    @Transactional(readOnly = true)
+    public BookingChangesResponse getUserBookingChanges(Long userId, LocalDateTime since) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime watermark = now.minusSeconds(watermarkLagSeconds);
+        if (since == null || since.isBefore(now.minusDays(tombstoneRetentionDays))) {
+            return new BookingChangesResponse(true, bookingRepository.findAllResponsesByUserId(userId),
+                    List.of(), watermark);
+        }
+        
+        List<BookingResponse> changed = bookingRepository.findChangedSince(userId, since);
+        List<Long> deletedIds = bookingTombstoneRepository.findBookingIdsDeletedSince(userId, since);
+        return new BookingChangesResponse(false, changed, deletedIds, watermark.isAfter(since) ? watermark : since);
     }
     
     public List<Booking> getUserBookingsByStatus(User user, BookingStatus status) {
@@ -56,23 +315,36 @@ public class BookingService {
         return bookingRepository.save(booking);
     }
     
-    public void cancelBooking(Long bookingId) {
-        Optional<Booking> bookingOpt = bookingRepository.findById(bookingId);
-        if (bookingOpt.isPresent()) {
-            Booking booking = bookingOpt.get();
-            booking.setStatus(BookingStatus.CANCELLED);
-            bookingRepository.save(booking);
+    /**
+     * Cancels the booking in a single UPDATE. Returns false when no booking with this id
+     * belongs to the user in a cancellable state.
+     */
+    public boolean cancelBooking(Long bookingId, Long userId) {
+        boolean cancelled = bookingRepository.transitionStatus(bookingId, userId, MODIFIABLE_STATUSES,
+                BookingStatus.CANCELLED, LocalDateTime.now()) == 1;
+        if (cancelled) {
+            slotIndex.removeAfterCommit(bookingId);
+            holdExpiry.cancelAfterCommit(bookingId);
         }
+        return cancelled;
     }
     
-    public void rescheduleBooking(Long bookingId, LocalDateTime newDateTime) {
-        Optional<Booking> bookingOpt = bookingRepository.findById(bookingId);
-        if (bookingOpt.isPresent()) {
-            Booking booking = bookingOpt.get();
-            booking.setBookingDateTime(newDateTime);
-            booking.setStatus(BookingStatus.RESCHEDULED);
-            bookingRepository.save(booking);
+    public boolean rescheduleBooking(Long bookingId, Long userId, LocalDateTime newDateTime) {
+        // Checked before reserving, so a cancelled or completed booking is refused rather than
+        // failing on the slot it would move to
+        Optional<Integer> durationMinutes = bookingRepository.findDurationMinutesByIdAndUserIdAndStatusIn(
+                bookingId, userId, MODIFIABLE_STATUSES);
+        if (durationMinutes.isEmpty()) {
+            return false;
+        }
+        
+        LocalDateTime end = reserveSlot(newDateTime, durationMinutes.get(), bookingId);
+        boolean rescheduled = bookingRepository.reschedule(bookingId, userId, MODIFIABLE_STATUSES, newDateTime,
+                BookingStatus.RESCHEDULED, LocalDateTime.now()) == 1;
+        if (rescheduled) {
+            slotIndex.putAfterCommit(bookingId, newDateTime, end);
         }
+        return rescheduled;
     }
     
     public void completeBooking(Long bookingId) {
@@ -81,10 +353,16 @@ public class BookingService {
             Booking booking = bookingOpt.get();
             booking.setStatus(BookingStatus.COMPLETED);
             bookingRepository.save(booking);
+            slotIndex.removeAfterCommit(bookingId);
         }
     }
     
     public void deleteBooking(Long id) {
+        Optional<Long> userId = bookingRepository.findUserIdById(id);
+        if (userId.isPresent()) {
+            bookingTombstoneRepository.save(new BookingTombstone(id, userId.get(), LocalDateTime.now()));
+        }
         bookingRepository.deleteById(id);
+        slotIndex.removeAfterCommit(id);
     }
 }
@@ -0,0 +1,459 @@
+package com.booking.service;
+
+import com.booking.entity.Booking;
+import com.booking.entity.BookingStatus;
+import com.booking.payload.response.FreeSlotResponse;
+import com.booking.repository.BookingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory index of the time slots taken by active bookings over the next
+ * {@code booking.slots.horizon-days} days, used to answer availability without a database
+ * round trip. Each day keeps its intervals in a start-ordered tree, so an overlap check is two
+ * O(log n) lookups per day touched.
+ *
+ * <p>Writers serialise on striped per-day locks held until their transaction completes, so
+ * only attempts for the same day contend. The index sees this node's writes at once but other
+ * nodes' only when a day is reloaded: after {@code booking.slots.refresh-seconds}, or when the
+ * database guard in {@link BookingService} disagrees with it. Days outside the horizon are not
+ * indexed and are left to that guard.
+ */
+@Component
+public class BookingSlotIndex {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BookingSlotIndex.class);
+    
+    // Statuses whose bookings occupy their slot
+    public static final Set<BookingStatus> ACTIVE_STATUSES =
+            EnumSet.of(BookingStatus.PENDING, BookingStatus.CONFIRMED, BookingStatus.RESCHEDULED);
+    
+    @Autowired
+    private BookingRepository bookingRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${booking.slots.horizon-days:60}")
+    private int horizonDays;
+    
+    @Value("${booking.slots.max-duration-minutes:480}")
+    private int maxDurationMinutes;
+    
+    @Value("${booking.slots.lock-stripes:64}")
+    private int lockStripes;
+    
+    @Value("${booking.slots.lock-timeout-ms:5000}")
+    private long lockTimeoutMs;
+    
+    @Value("${booking.slots.refresh-seconds:300}")
+    private long refreshSeconds;
+    
+    static final int SLOT_MINUTES = 5;
+    
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    
+    private static final int SLOTS_PER_DAY = MINUTES_PER_DAY / SLOT_MINUTES;
+    
+    private final Map<LocalDate, DaySchedule> days = new ConcurrentHashMap<>();
+    
+    private final Map<Long, Interval> byId = new ConcurrentHashMap<>();
+    
+    private ReentrantLock[] stripes;
+    
+    private TransactionTemplate loadTransaction;
+    
+    @PostConstruct
+    public void init() {
+        // Loads read committed state of their own, never the snapshot of a writer's transaction
+        loadTransaction = new TransactionTemplate(transactionManager);
+        loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        loadTransaction.setReadOnly(true);
+        
+        stripes = new ReentrantLock[lockStripes];
+        for (int i = 0; i < lockStripes; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        LocalDate today = LocalDate.now();
+        LocalDate last = today.plusDays(horizonDays);
+        Map<LocalDate, DaySchedule> loaded = new HashMap<>();
+        for (LocalDate day = today; !day.isAfter(last); day = day.plusDays(1)) {
+            loaded.put(day, new DaySchedule(day));
+        }
+        
+        List<Booking> bookings = bookingRepository.findByBookingDateTimeBetween(
+                today.atStartOfDay().minusMinutes(maxDurationMinutes), last.plusDays(1).atStartOfDay());
+        for (Booking booking : bookings) {
+            if (ACTIVE_STATUSES.contains(booking.getStatus())) {
+                Interval interval = new Interval(booking.getId(), booking.getBookingDateTime(),
+                        booking.getBookingDateTime().plusMinutes(booking.getDurationMinutes()));
+                byId.put(interval.bookingId, interval);
+                for (LocalDate day : daysOf(interval.start, interval.end)) {
+                    DaySchedule schedule = loaded.get(day);
+                    if (schedule != null) {
+                        schedule.add(interval);
+                    }
+                }
+            }
+        }
+        
+        // A day already loaded on demand is at least as fresh as this snapshot
+        loaded.forEach(days::putIfAbsent);
+        logger.info("Booking slot index warmed with {} bookings over {} days", byId.size(), loaded.size());
+    }
+    
+    /**
+     * Locks every day touched by {@code [start, end)} until the current transaction completes.
+     * Must be called inside a transaction, before checking and writing those days.
+     */
+    public void lockSlot(LocalDateTime start, LocalDateTime end) {
+        lockDays(daysOf(start, end));
+    }
+    
+    /**
+     * Locks all {@code lockedDays} at once until the current transaction completes. Writers that
+     * touch several slots must lock them in one call rather than slot by slot.
+     */
+    public void lockDays(Collection<LocalDate> lockedDays) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Booking slots can only be locked inside a transaction");
+        }
+        
+        // Acquire stripes in index order so writers spanning several days cannot deadlock
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+        for (LocalDate day : lockedDays) {
+            stripeIndexes.add(stripeIndex(day));
+        }
+        List<ReentrantLock> held = new ArrayList<>();
+        try {
+            for (int index : stripeIndexes) {
+                ReentrantLock lock = stripes[index];
+                acquire(lock);
+                held.add(lock);
+            }
+        } catch (RuntimeException e) {
+            held.forEach(ReentrantLock::unlock);
+            throw e;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                held.forEach(ReentrantLock::unlock);
+            }
+        });
+    }
+    
+    private int stripeIndex(LocalDate day) {
+        return Math.floorMod(day.hashCode(), stripes.length);
+    }
+    
+    private void acquire(ReentrantLock lock) {
+        try {
+            if (!lock.tryLock(lockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Booking calendar is busy, please retry");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the booking calendar");
+        }
+    }
+    
+    /**
+     * Whether {@code [start, end)} is free of indexed bookings other than {@code excludeBookingId}.
+     * Days outside the horizon are reported free and must be checked against the database.
+     */
+    public boolean isFree(LocalDateTime start, LocalDateTime end, Long excludeBookingId) {
+        for (LocalDate day : daysOf(start, end)) {
+            DaySchedule schedule = scheduleFor(day);
+            if (schedule != null && schedule.overlaps(start, end, excludeBookingId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Free periods of at least {@code minDurationMinutes} between the start of {@code from} and
+     * the end of {@code to}, read from the per-day occupancy bitmaps. Periods are aligned to
+     * {@value #SLOT_MINUTES}-minute slots and run across midnight where both days are free.
+     * Slots of today that have already begun are not free.
+     */
+    public List<FreeSlotResponse> findFreeSlots(LocalDate from, LocalDate to, int minDurationMinutes) {
+        LocalDateTime now = LocalDateTime.now();
+        List<FreeSlotResponse> freeSlots = new ArrayList<>();
+        LocalDateTime runStart = null;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            DaySchedule schedule = readSchedule(day);
+            if (schedule == null) {
+                throw new IllegalArgumentException("Availability is only known for today and the next "
+                        + horizonDays + " days");
+            }
+            long[] occupancy = schedule.occupancy();
+            LocalDateTime dayStart = day.atStartOfDay();
+            int firstSlot = day.equals(now.toLocalDate())
+                    ? (int) ((Duration.between(dayStart, now).toMinutes() + SLOT_MINUTES) / SLOT_MINUTES) : 0;
+            for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+                boolean busy = slot < firstSlot || (occupancy[slot >>> 6] & (1L << slot)) != 0;
+                if (busy && runStart != null) {
+                    addIfLongEnough(freeSlots, runStart, dayStart.plusMinutes((long) slot * SLOT_MINUTES),
+                            minDurationMinutes);
+                    runStart = null;
+                } else if (!busy && runStart == null) {
+                    runStart = dayStart.plusMinutes((long) slot * SLOT_MINUTES);
+                }
+            }
+        }
+        if (runStart != null) {
+            addIfLongEnough(freeSlots, runStart, to.plusDays(1).atStartOfDay(), minDurationMinutes);
+        }
+        return freeSlots;
+    }
+    
+    private static void addIfLongEnough(List<FreeSlotResponse> freeSlots, LocalDateTime start, LocalDateTime end,
+                                        int minDurationMinutes) {
+        if (Duration.between(start, end).toMinutes() >= minDurationMinutes) {
+            freeSlots.add(new FreeSlotResponse(start, end));
+        }
+    }
+    
+    public boolean isIndexed(LocalDate day) {
+        return !day.isBefore(LocalDate.now()) && !day.isAfter(LocalDate.now().plusDays(horizonDays));
+    }
+    
+    /**
+     * Adds the booking to the index once the current transaction commits. Any previous
+     * interval for the same booking is replaced.
+     */
+    public void putAfterCommit(Long bookingId, LocalDateTime start, LocalDateTime end) {
+        Interval interval = new Interval(bookingId, start, end);
+        afterCommit(() -> {
+            remove(bookingId);
+            byId.put(bookingId, interval);
+            for (LocalDate day : daysOf(start, end)) {
+                DaySchedule schedule = days.get(day);
+                if (schedule != null) {
+                    schedule.add(interval);
+                }
+            }
+        });
+    }
+    
+    public void removeAfterCommit(Long bookingId) {
+        afterCommit(() -> remove(bookingId));
+    }
+    
+    /**
+     * Reloads {@code reloadedDays} from the database, for when the index turned out to disagree
+     * with it. The caller holds the stripe locks of those days.
+     */
+    public void reload(Collection<LocalDate> reloadedDays) {
+        for (LocalDate day : reloadedDays) {
+            if (isIndexed(day)) {
+                days.put(day, load(day));
+            }
+        }
+    }
+    
+    public int getMaxDurationMinutes() {
+        return maxDurationMinutes;
+    }
+    
+    private void remove(Long bookingId) {
+        Interval interval = byId.remove(bookingId);
+        if (interval != null) {
+            for (LocalDate day : daysOf(interval.start, interval.end)) {
+                DaySchedule schedule = days.get(day);
+                if (schedule != null) {
+                    schedule.remove(interval);
+                }
+            }
+        }
+    }
+    
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+    
+    // Readers take the day's stripe lock only when the day has to be loaded, so a booking that
+    // commits meanwhile cannot be missed by the load and then skipped by its own index update
+    private DaySchedule readSchedule(LocalDate day) {
+        DaySchedule schedule = days.get(day);
+        if (schedule != null && !isStale(schedule) && isIndexed(day)) {
+            return schedule;
+        }
+        ReentrantLock lock = stripes[stripeIndex(day)];
+        acquire(lock);
+        try {
+            return scheduleFor(day);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Loads a day on first use and once it is older than refresh-seconds; the caller holds the
+    // day's stripe lock, so no writer races the load
+    private DaySchedule scheduleFor(LocalDate day) {
+        if (!isIndexed(day)) {
+            days.remove(day);
+            return null;
+        }
+        DaySchedule schedule = days.get(day);
+        if (schedule == null || isStale(schedule)) {
+            schedule = load(day);
+            days.put(day, schedule);
+        }
+        return schedule;
+    }
+    
+    private boolean isStale(DaySchedule schedule) {
+        return System.nanoTime() - schedule.loadedAt > TimeUnit.SECONDS.toNanos(refreshSeconds);
+    }
+    
+    private DaySchedule load(LocalDate day) {
+        LocalDateTime dayStart = day.atStartOfDay();
+        List<Booking> bookings = loadTransaction.execute(status -> bookingRepository.findByBookingDateTimeBetween(
+                dayStart.minusMinutes(maxDurationMinutes), day.plusDays(1).atStartOfDay()));
+        DaySchedule loaded = new DaySchedule(day);
+        for (Booking booking : bookings) {
+            LocalDateTime end = booking.getBookingDateTime().plusMinutes(booking.getDurationMinutes());
+            if (ACTIVE_STATUSES.contains(booking.getStatus()) && end.isAfter(dayStart)) {
+                Interval interval = new Interval(booking.getId(), booking.getBookingDateTime(), end);
+                byId.put(interval.bookingId, interval);
+                loaded.add(interval);
+            }
+        }
+        return loaded;
+    }
+    
+    public static List<LocalDate> daysOf(LocalDateTime start, LocalDateTime end) {
+        List<LocalDate> result = new ArrayList<>();
+        LocalDate last = end.minusNanos(1).toLocalDate();
+        for (LocalDate day = start.toLocalDate(); !day.isAfter(last); day = day.plusDays(1)) {
+            result.add(day);
+        }
+        return result;
+    }
+    
+    private static final class Interval {
+        final Long bookingId;
+        final LocalDateTime start;
+        final LocalDateTime end;
+        
+        Interval(Long bookingId, LocalDateTime start, LocalDateTime end) {
+            this.bookingId = bookingId;
+            this.start = start;
+            this.end = end;
+        }
+    }
+    
+    // Intervals of one day keyed by start; legacy overlaps in the data share a start via the list
+    // Also keeps an occupancy bitmap of SLOT_MINUTES slots, set where any booking touches the slot
+    private static final class DaySchedule {
+        private final long loadedAt = System.nanoTime();
+        private final LocalDateTime dayStart;
+        private final TreeMap<LocalDateTime, List<Interval>> byStart = new TreeMap<>();
+        private final long[] occupied = new long[(SLOTS_PER_DAY + 63) / 64];
+        
+        DaySchedule(LocalDate day) {
+            this.dayStart = day.atStartOfDay();
+        }
+        
+        synchronized void add(Interval interval) {
+            byStart.computeIfAbsent(interval.start, s -> new ArrayList<>(1)).add(interval);
+            mark(interval);
+        }
+        
+        synchronized void remove(Interval interval) {
+            List<Interval> atStart = byStart.get(interval.start);
+            if (atStart != null) {
+                atStart.removeIf(i -> i.bookingId.equals(interval.bookingId));
+                if (atStart.isEmpty()) {
+                    byStart.remove(interval.start);
+                }
+                
+                // Neighbouring bookings may share edge slots, so rebuild rather than clear bits
+                Arrays.fill(occupied, 0L);
+                byStart.values().forEach(intervals -> intervals.forEach(this::mark));
+            }
+        }
+        
+        synchronized long[] occupancy() {
+            return occupied.clone();
+        }
+        
+        private void mark(Interval interval) {
+            long startMinute = Math.max(0, Duration.between(dayStart, interval.start).toMinutes());
+            long endMinute = Math.min(MINUTES_PER_DAY, Duration.between(dayStart, interval.end).toMinutes());
+            int fromSlot = (int) (startMinute / SLOT_MINUTES);
+            int toSlot = (int) ((endMinute + SLOT_MINUTES - 1) / SLOT_MINUTES);
+            for (int slot = fromSlot; slot < toSlot; slot++) {
+                occupied[slot >>> 6] |= 1L << slot;
+            }
+        }
+        
+        synchronized boolean overlaps(LocalDateTime start, LocalDateTime end, Long excludeBookingId) {
+            // Intervals never overlap each other, so only the nearest one starting at or before
+            // start and the nearest one starting after it can reach into [start, end)
+            Map.Entry<LocalDateTime, List<Interval>> before = byStart.floorEntry(start);
+            if (before != null) {
+                for (Interval interval : before.getValue()) {
+                    if (!interval.bookingId.equals(excludeBookingId) && interval.end.isAfter(start)) {
+                        return true;
+                    }
+                }
+            }
+            Map.Entry<LocalDateTime, List<Interval>> after = byStart.higherEntry(start);
+            while (after != null && after.getKey().isBefore(end)) {
+                for (Interval interval : after.getValue()) {
+                    if (!interval.bookingId.equals(excludeBookingId)) {
+                        return true;
+                    }
+                }
+                after = byStart.higherEntry(after.getKey());
+            }
+            return false;
+        }
+    }
+}
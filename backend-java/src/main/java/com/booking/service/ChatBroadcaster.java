@@ -0,0 +1,53 @@
+package com.booking.service;
+
+import com.booking.entity.ChatStatus;
+import com.booking.payload.response.ChatSessionResponse;
+import com.booking.security.ChatSubscriptionInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+
+/**
+ * Fans committed chat messages and session status changes out to the session's STOMP topic.
+ * Each frame carries an {@code event-type} header of {@code message} or {@code status};
+ * escalations are also announced on the admins' escalation topic.
+ */
+@Component
+public class ChatBroadcaster {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChatBroadcaster.class);
+    
+    private static final String EVENT_TYPE_HEADER = "event-type";
+    
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageAdded(ChatMessageAddedEvent event) {
+        send(ChatSubscriptionInterceptor.SESSION_TOPIC_PREFIX + event.getReportId(), event.getMessage(), "message");
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(ChatSessionStatusChangedEvent event) {
+        ChatSessionResponse chatSession = event.getChatSession();
+        send(ChatSubscriptionInterceptor.SESSION_TOPIC_PREFIX + chatSession.getReportId(), chatSession, "status");
+        if (chatSession.getStatus() == ChatStatus.ESCALATED) {
+            send(ChatSubscriptionInterceptor.ESCALATIONS_TOPIC, chatSession, "status");
+        }
+    }
+    
+    private void send(String destination, Object payload, String eventType) {
+        try {
+            messagingTemplate.convertAndSend(destination, payload, Map.of(EVENT_TYPE_HEADER, eventType));
+        } catch (MessagingException e) {
+            // Subscribers catch up over REST; a failed push must not fail the write that caused it
+            logger.error("Failed to push {} to {}", eventType, destination, e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.booking.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Runs asynchronous chat work one task at a time per chat session, in submission order, while
+ * different sessions proceed in parallel. A task holds its session until the future it returns
+ * completes, so a message and its AI answer are stored before the next message is taken up.
+ * The next task is started on the dispatch executor rather than on the thread that completed
+ * the previous one.
+ * Sessions without work in flight cost nothing; at most {@code chat.dispatch.max-queued-per-session}
+ * tasks may wait behind the running one, further submissions fail with {@link QueueFullException}.
+ */
+@Component
+public class ChatDispatcher {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    @Qualifier("chatDispatchExecutor")
+    private AsyncTaskExecutor dispatchExecutor;
+    
+    @Value("${chat.dispatch.max-queued-per-session:3}")
+    private int maxQueuedPerSession;
+    
+    private final Map<String, SessionQueue> queues = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        Gauge.builder("chat.dispatch.active-sessions", queues, Map::size)
+                .description("Chat sessions with a message being processed")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Runs {@code task} once every task submitted earlier for {@code reportId} has completed.
+     */
+    public <T> CompletableFuture<T> submit(String reportId, Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable run = () -> start(reportId, task, result);
+        
+        boolean[] runNow = new boolean[1];
+        queues.compute(reportId, (key, queue) -> {
+            if (queue == null) {
+                runNow[0] = true;
+                return new SessionQueue();
+            }
+            if (queue.waiting.size() >= maxQueuedPerSession) {
+                throw new QueueFullException(reportId);
+            }
+            queue.waiting.add(run);
+            return queue;
+        });
+        
+        if (runNow[0]) {
+            run.run();
+        }
+        return result;
+    }
+    
+    private <T> void start(String reportId, Supplier<CompletableFuture<T>> task, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = task.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+            } else {
+                result.complete(value);
+            }
+            runNext(reportId);
+        });
+    }
+    
+    // Hands the session to its next waiting task, or forgets the session once nothing is waiting
+    private void runNext(String reportId) {
+        Runnable[] next = new Runnable[1];
+        queues.computeIfPresent(reportId, (key, queue) -> {
+            next[0] = queue.waiting.poll();
+            return next[0] != null ? queue : null;
+        });
+        if (next[0] != null) {
+            try {
+                dispatchExecutor.execute(next[0]);
+            } catch (RejectedExecutionException e) {
+                // Only while shutting down; run it here rather than leave the session stuck
+                next[0].run();
+            }
+        }
+    }
+    
+    private static final class SessionQueue {
+        
+        // Guarded by the map's per-key locking; the running task is not in here
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    }
+    
+    /**
+     * Thrown when a chat session already has the maximum number of messages waiting.
+     */
+    public static class QueueFullException extends RejectedExecutionException {
+        
+        private static final long serialVersionUID = 1L;
+        
+        public QueueFullException(String reportId) {
+            super("Too many messages pending for chat session " + reportId);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.booking.service;
+
+import com.booking.entity.ChatMessage;
+import com.booking.entity.ChatSession;
+import com.booking.entity.ChatStatus;
+import com.booking.entity.MessageSenderType;
+import com.booking.payload.response.ChatMessageResponse;
+import com.booking.repository.ChatMessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The last {@code chat.history.size} messages of each active chat session, sent to the AI
+ * backend as conversation context. A session's buffer is loaded from the database on its
+ * first AI turn, then kept current from committed {@link ChatMessageAddedEvent}s; it is
+ * dropped when the session is closed, after {@code idle-minutes} without use, or when more
+ * than {@code max-sessions} sessions are held. Long messages are truncated to
+ * {@code max-message-chars}, so memory per session is bounded.
+ */
+@Component
+public class ChatHistoryCache {
+    
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+    
+    @Autowired
+    private ChatMessageWriteBehind chatMessageWriteBehind;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${chat.history.size:20}")
+    private int size;
+    
+    @Value("${chat.history.max-message-chars:2000}")
+    private int maxMessageChars;
+    
+    @Value("${chat.history.max-sessions:10000}")
+    private long maxSessions;
+    
+    @Value("${chat.history.idle-minutes:30}")
+    private long idleMinutes;
+    
+    private Cache<String, History> histories;
+    
+    @PostConstruct
+    public void init() {
+        histories = Caffeine.newBuilder()
+                .maximumSize(maxSessions)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .build();
+        
+        CaffeineCacheMetrics.monitor(meterRegistry, histories, "chatHistoryCache");
+    }
+    
+    /**
+     * The session's recent messages, oldest first, as {@code role}/{@code content} pairs.
+     */
+    public List<Map<String, String>> recent(ChatSession chatSession) {
+        return histories.get(chatSession.getReportId(), reportId -> load(chatSession)).snapshot();
+    }
+    
+    // Sessions not held yet are left alone; their buffer is loaded complete on the next AI turn
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageAdded(ChatMessageAddedEvent event) {
+        History history = histories.getIfPresent(event.getReportId());
+        if (history != null) {
+            ChatMessageResponse message = event.getMessage();
+            history.add(message.getSenderType(), message.getContent());
+        }
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(ChatSessionStatusChangedEvent event) {
+        if (event.getChatSession().getStatus() == ChatStatus.CLOSED) {
+            histories.invalidate(event.getChatSession().getReportId());
+        }
+    }
+    
+    private History load(ChatSession chatSession) {
+        List<ChatMessage> latest = chatMessageWriteBehind.readThrough(chatSession.getId(), 0, () -> {
+            List<ChatMessage> stored = new ArrayList<>(chatMessageRepository.findByChatSessionIdOrderByIdDesc(
+                    chatSession.getId(), PageRequest.ofSize(size)));
+            Collections.reverse(stored);
+            return stored;
+        });
+        History history = new History();
+        for (ChatMessage message : latest) {
+            history.add(message.getSenderType(), message.getContent());
+        }
+        return history;
+    }
+    
+    private final class History {
+        
+        private final ArrayDeque<Map<String, String>> messages = new ArrayDeque<>(size);
+        
+        synchronized void add(MessageSenderType senderType, String content) {
+            if (messages.size() == size) {
+                messages.removeFirst();
+            }
+            String text = content.length() > maxMessageChars ? content.substring(0, maxMessageChars) : content;
+            messages.addLast(Map.of("role", senderType == MessageSenderType.USER ? "user" : "assistant",
+                    "content", text));
+        }
+        
+        synchronized List<Map<String, String>> snapshot() {
+            return new ArrayList<>(messages);
+        }
+    }
+}
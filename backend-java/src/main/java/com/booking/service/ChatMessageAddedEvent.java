@@ -0,0 +1,30 @@
+package com.booking.service;
+
+import com.booking.payload.response.ChatMessageResponse;
+
+/**
+ * Published by {@link ChatService} whenever a message is stored in a chat session. Listeners
+ * bound to the transaction phase see it only once the message is committed.
+ */
+public class ChatMessageAddedEvent {
+    
+    private final String reportId;
+    private final ChatMessageResponse message;
+    
+    public ChatMessageAddedEvent(String reportId, ChatMessageResponse message) {
+        this.reportId = reportId;
+        this.message = message;
+    }
+    
+    public String getReportId() {
+        return reportId;
+    }
+    
+    public Long getChatSessionId() {
+        return message.getChatSessionId();
+    }
+    
+    public ChatMessageResponse getMessage() {
+        return message;
+    }
+}
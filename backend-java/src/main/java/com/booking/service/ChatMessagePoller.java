@@ -0,0 +1,134 @@
+package com.booking.service;
+
+import com.booking.payload.response.ChatMessageResponse;
+import com.booking.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import jakarta.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Long-polling for new chat messages. A poll with no newer messages is parked as a
+ * {@link DeferredResult}, holding no thread, until a {@link ChatMessageAddedEvent} for its
+ * session is committed or {@code chat.long-poll.timeout-ms} passes, in which case it answers
+ * with an empty list.
+ */
+@Component
+public class ChatMessagePoller {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessagePoller.class);
+    
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+    
+    @Autowired
+    private ChatMessageWriteBehind chatMessageWriteBehind;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${chat.long-poll.timeout-ms:25000}")
+    private long timeoutMs;
+    
+    @Value("${chat.long-poll.max-waiting:10000}")
+    private int maxWaiting;
+    
+    private final Map<Long, Set<Waiter>> waitersBySession = new ConcurrentHashMap<>();
+    
+    private final AtomicInteger waiting = new AtomicInteger();
+    
+    @PostConstruct
+    public void init() {
+        Gauge.builder("chat.polls.waiting", waiting, AtomicInteger::get)
+                .description("Long polls parked waiting for a new chat message")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Messages of the session with an id above {@code afterId}, in id order, as soon as there
+     * is at least one.
+     */
+    public DeferredResult<ResponseEntity<?>> poll(Long chatSessionId, long afterId) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(timeoutMs, () -> ResponseEntity.ok(List.of()));
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Too many open polls, please try again shortly"));
+            return result;
+        }
+        
+        // Register before looking, so a message committed in between is either seen here or notified
+        Waiter waiter = new Waiter(afterId, result);
+        waitersBySession.computeIfAbsent(chatSessionId, id -> ConcurrentHashMap.newKeySet()).add(waiter);
+        result.onCompletion(() -> {
+            waiting.decrementAndGet();
+            waitersBySession.computeIfPresent(chatSessionId, (id, waiters) -> {
+                waiters.remove(waiter);
+                return waiters.isEmpty() ? null : waiters;
+            });
+        });
+        
+        List<ChatMessageResponse> messages = findAfter(chatSessionId, afterId);
+        if (!messages.isEmpty()) {
+            result.setResult(ResponseEntity.ok(messages));
+        }
+        return result;
+    }
+    
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageAdded(ChatMessageAddedEvent event) {
+        Set<Waiter> waiters = waitersBySession.remove(event.getChatSessionId());
+        if (waiters == null || waiters.isEmpty()) {
+            return;
+        }
+        
+        // One query serves every poll of the session, each taking the messages past its own position
+        long fromId = waiters.stream().mapToLong(waiter -> waiter.afterId).min().getAsLong();
+        try {
+            List<ChatMessageResponse> messages = findAfter(event.getChatSessionId(), fromId);
+            for (Waiter waiter : waiters) {
+                waiter.result.setResult(ResponseEntity.ok(messages.stream()
+                        .filter(message -> message.getId() > waiter.afterId)
+                        .collect(Collectors.toList())));
+            }
+        } catch (RuntimeException e) {
+            // Clients poll again on an empty answer and pick the message up then
+            logger.error("Failed to notify {} polls of chat session {}", waiters.size(), event.getChatSessionId(), e);
+            waiters.forEach(waiter -> waiter.result.setResult(ResponseEntity.ok(List.of())));
+        }
+    }
+    
+    private List<ChatMessageResponse> findAfter(Long chatSessionId, long afterId) {
+        return chatMessageWriteBehind.readThrough(chatSessionId, afterId,
+                () -> chatMessageRepository.findByChatSessionIdAndIdGreaterThanOrderByIdAsc(chatSessionId, afterId))
+                .stream()
+                .map(ChatMessageResponse::new)
+                .collect(Collectors.toList());
+    }
+    
+    private static final class Waiter {
+        
+        private final long afterId;
+        private final DeferredResult<ResponseEntity<?>> result;
+        
+        private Waiter(long afterId, DeferredResult<ResponseEntity<?>> result) {
+            this.afterId = afterId;
+            this.result = result;
+        }
+    }
+}
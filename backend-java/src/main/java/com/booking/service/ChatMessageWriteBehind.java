@@ -0,0 +1,432 @@
+package com.booking.service;
+
+import com.booking.entity.ChatMessage;
+import com.booking.entity.ChatSession;
+import com.booking.entity.MessageSenderType;
+import com.booking.payload.response.ChatMessageResponse;
+import com.booking.repository.ListingVersion;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Optional write-behind store for chat messages ({@code chat.write-behind.enabled}). A message
+ * gets its id from {@link IdAllocator} and is acknowledged at once; a flusher thread inserts
+ * pending messages in JDBC batches of {@code batch-size}, every {@code flush-interval-ms} or as
+ * soon as a full batch is waiting. Until a message is flushed, the session's reads in
+ * {@link ChatService} see it through {@link #readThrough}.
+ *
+ * <p>On shutdown whatever cannot be flushed is appended to {@code spool-file}, which is
+ * replayed on the next start, skipping messages already written. A crash loses the messages
+ * still pending. All nodes sharing a database, and the AI backend ({@code CHAT_WRITE_BEHIND}),
+ * must run the same mode: an AUTO_INCREMENT insert moves past the highest id written so far
+ * and can take an id this node has already reserved.
+ */
+@Component
+public class ChatMessageWriteBehind {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessageWriteBehind.class);
+    
+    public static final String CHAT_MESSAGE_ID_SEQUENCE = "chat_message_id";
+    
+    private static final String INSERT_SQL = "INSERT INTO chat_messages "
+            + "(id, chat_session_id, content, sender_type, created_at) VALUES (?, ?, ?, ?, ?)";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private IdAllocator idAllocator;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${chat.write-behind.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${chat.write-behind.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${chat.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+    
+    @Value("${chat.write-behind.max-pending:20000}")
+    private int maxPending;
+    
+    @Value("${chat.write-behind.spool-file:data/chat-messages.spool}")
+    private String spoolFile;
+    
+    private final ConcurrentLinkedQueue<ChatMessage> queue = new ConcurrentLinkedQueue<>();
+    
+    // Read-your-writes index: unflushed messages by session, in id order
+    private final Map<Long, NavigableMap<Long, ChatMessage>> pendingBySession = new ConcurrentHashMap<>();
+    
+    private final AtomicInteger pending = new AtomicInteger();
+    
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    
+    // Enqueuing holds the read lock, so once stop() has taken the write lock no message can
+    // reach the queue after the final drain
+    private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+    
+    private boolean stopped;
+    
+    private TransactionTemplate batchTransaction;
+    
+    private List<ChatMessage> failedBatch = List.of();
+    
+    private ScheduledExecutorService flusher;
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        
+        batchTransaction = new TransactionTemplate(transactionManager);
+        
+        // Start above every id the table already holds, including ones assigned by AUTO_INCREMENT
+        jdbcTemplate.update("INSERT IGNORE INTO id_sequences (sequence_name, next_val) VALUES (?, 0)",
+                CHAT_MESSAGE_ID_SEQUENCE);
+        jdbcTemplate.update("UPDATE id_sequences SET next_val = GREATEST(next_val, "
+                + "(SELECT COALESCE(MAX(id), 0) + 1 FROM chat_messages)) WHERE sequence_name = ?",
+                CHAT_MESSAGE_ID_SEQUENCE);
+        replaySpool();
+        
+        Gauge.builder("chat.write-behind.pending", pending, AtomicInteger::get)
+                .description("Chat messages acknowledged but not yet written")
+                .register(meterRegistry);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        stopLock.writeLock().lock();
+        try {
+            stopped = true;
+        } finally {
+            stopLock.writeLock().unlock();
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Final chat message flush failed", e);
+        }
+        List<ChatMessage> remaining = drain(Integer.MAX_VALUE);
+        if (!remaining.isEmpty()) {
+            spool(remaining);
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Assigns the message its id and creation time and queues it for writing. Throws
+     * {@link RejectedExecutionException} while {@code max-pending} messages are waiting, and
+     * once shutdown has begun.
+     */
+    public ChatMessage enqueue(ChatMessage message) {
+        stopLock.readLock().lock();
+        try {
+            if (stopped) {
+                throw new RejectedExecutionException("Chat message writer is shutting down");
+            }
+            if (pending.incrementAndGet() > maxPending) {
+                pending.decrementAndGet();
+                throw new RejectedExecutionException("Chat message backlog is full");
+            }
+            message.setId(idAllocator.nextValue(CHAT_MESSAGE_ID_SEQUENCE));
+            message.setCreatedAt(LocalDateTime.now());
+            pendingBySession.compute(message.getChatSession().getId(), (id, unflushed) -> {
+                NavigableMap<Long, ChatMessage> messages = unflushed != null ? unflushed : new ConcurrentSkipListMap<>();
+                messages.put(message.getId(), message);
+                return messages;
+            });
+            queue.add(message);
+        } finally {
+            stopLock.readLock().unlock();
+        }
+        
+        if (pending.get() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the final flush or the spool takes the message
+            }
+        }
+        return message;
+    }
+    
+    /**
+     * Reads a session's messages with an id above {@code afterId} through {@code stored} and
+     * adds its unflushed ones that are not among them. Unflushed messages are looked at before
+     * the read, so one written in between is found in one place or the other.
+     */
+    public List<ChatMessage> readThrough(Long chatSessionId, long afterId, Supplier<List<ChatMessage>> stored) {
+        List<ChatMessage> unflushed = unflushed(chatSessionId, afterId);
+        List<ChatMessage> messages = stored.get();
+        if (unflushed.isEmpty()) {
+            return messages;
+        }
+        
+        Set<Long> storedIds = new HashSet<>();
+        messages.forEach(message -> storedIds.add(message.getId()));
+        List<ChatMessage> merged = new ArrayList<>(messages);
+        for (ChatMessage message : unflushed) {
+            if (!storedIds.contains(message.getId())) {
+                merged.add(message);
+            }
+        }
+        return merged;
+    }
+    
+    /**
+     * The stored version of a session's messages adjusted for its unflushed ones, so an ETag
+     * changes as soon as a message is acknowledged.
+     */
+    public ListingVersion readThrough(Long chatSessionId, Supplier<ListingVersion> stored) {
+        List<ChatMessage> unflushed = unflushed(chatSessionId, 0);
+        ListingVersion version = stored.get();
+        if (unflushed.isEmpty()) {
+            return version;
+        }
+        
+        ChatMessage last = unflushed.get(unflushed.size() - 1);
+        Long maxId = version.getMaxId() == null ? last.getId() : Math.max(version.getMaxId(), last.getId());
+        LocalDateTime lastModified = version.getLastModified() == null
+                || last.getCreatedAt().isAfter(version.getLastModified()) ? last.getCreatedAt() : version.getLastModified();
+        return ListingVersion.of(version.getCount() + unflushed.size(), maxId, lastModified);
+    }
+    
+    private List<ChatMessage> unflushed(Long chatSessionId, long afterId) {
+        NavigableMap<Long, ChatMessage> messages = pendingBySession.get(chatSessionId);
+        return messages == null ? List.of() : new ArrayList<>(messages.tailMap(afterId, false).values());
+    }
+    
+    private synchronized void flush() {
+        flushRequested.set(false);
+        try {
+            while (true) {
+                List<ChatMessage> batch = drain(batchSize);
+                if (batch.isEmpty()) {
+                    return;
+                }
+                int written = write(batch);
+                forget(batch.subList(0, written));
+                if (written < batch.size()) {
+                    failedBatch = new ArrayList<>(batch.subList(written, batch.size()));
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Chat message flush failed", e);
+        }
+    }
+    
+    // Takes a batch that failed to write first, then queued messages
+    private List<ChatMessage> drain(int max) {
+        List<ChatMessage> batch = new ArrayList<>(failedBatch);
+        failedBatch = List.of();
+        ChatMessage message;
+        while (batch.size() < max && (message = queue.poll()) != null) {
+            batch.add(message);
+        }
+        return batch;
+    }
+    
+    /**
+     * Writes a batch in one transaction and returns how many of its messages are done with,
+     * written or dropped; the rest failed for a reason worth retrying. A message that violates
+     * a constraint, e.g. because its session was deleted meanwhile, fails the whole batch, so
+     * the batch is then written row by row and only that message is dropped.
+     */
+    private int write(List<ChatMessage> batch) {
+        try {
+            insert(batch);
+            return batch.size();
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Batch of {} chat messages rejected, writing them one by one", batch.size(), e);
+        } catch (RuntimeException e) {
+            logger.error("Failed to write {} chat messages, retrying", batch.size(), e);
+            return 0;
+        }
+        
+        for (int i = 0; i < batch.size(); i++) {
+            ChatMessage message = batch.get(i);
+            try {
+                insert(List.of(message));
+            } catch (DataIntegrityViolationException e) {
+                logger.error("Dropped chat message {} of session {}", message.getId(),
+                        message.getChatSession().getId(), e);
+            } catch (RuntimeException e) {
+                logger.error("Failed to write {} chat messages, retrying", batch.size() - i, e);
+                return i;
+            }
+        }
+        return batch.size();
+    }
+    
+    private void insert(List<ChatMessage> batch) {
+        batchTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(),
+                (statement, message) -> {
+                    statement.setLong(1, message.getId());
+                    statement.setLong(2, message.getChatSession().getId());
+                    statement.setString(3, message.getContent());
+                    statement.setString(4, message.getSenderType().name());
+                    statement.setTimestamp(5, Timestamp.valueOf(message.getCreatedAt()));
+                }));
+    }
+    
+    // Messages of a replayed spool that an earlier, interrupted replay already wrote
+    private Set<Long> existingIds(List<ChatMessage> messages) {
+        String placeholders = String.join(",", Collections.nCopies(messages.size(), "?"));
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM chat_messages WHERE id IN (" + placeholders + ")",
+                Long.class, messages.stream().map(ChatMessage::getId).toArray()));
+    }
+    
+    private void forget(List<ChatMessage> batch) {
+        for (ChatMessage message : batch) {
+            pendingBySession.computeIfPresent(message.getChatSession().getId(), (id, unflushed) -> {
+                unflushed.remove(message.getId());
+                return unflushed.isEmpty() ? null : unflushed;
+            });
+        }
+        pending.addAndGet(-batch.size());
+    }
+    
+    private void spool(List<ChatMessage> messages) {
+        Path path = Paths.get(spoolFile);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (ChatMessage message : messages) {
+                    writer.write(objectMapper.writeValueAsString(new ChatMessageResponse(message)));
+                    writer.write('\n');
+                }
+            }
+            logger.warn("Spooled {} unwritten chat messages to {}", messages.size(), path.toAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Lost {} unwritten chat messages: cannot spool to {}", messages.size(), path.toAbsolutePath(), e);
+        }
+    }
+    
+    // Moves the spool aside before writing it, so a failed replay is retried on the next start
+    private void replaySpool() {
+        Path path = Paths.get(spoolFile);
+        Path replaying = path.resolveSibling(path.getFileName() + ".replaying");
+        try {
+            if (Files.exists(path)) {
+                if (Files.exists(replaying)) {
+                    Files.write(replaying, Files.readAllBytes(path), StandardOpenOption.APPEND);
+                    Files.delete(path);
+                } else {
+                    Files.move(path, replaying, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            if (!Files.exists(replaying)) {
+                return;
+            }
+            
+            List<ChatMessage> messages = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        messages.add(fromSpool(objectMapper.readTree(line)));
+                    }
+                }
+            }
+            for (int from = 0; from < messages.size(); from += batchSize) {
+                List<ChatMessage> batch = messages.subList(from, Math.min(from + batchSize, messages.size()));
+                Set<Long> written = existingIds(batch);
+                List<ChatMessage> unwritten = batch.stream().filter(message -> !written.contains(message.getId())).toList();
+                if (!unwritten.isEmpty() && write(unwritten) < unwritten.size()) {
+                    throw new IllegalStateException("Spool replay interrupted");
+                }
+            }
+            Files.delete(replaying);
+            logger.info("Replayed {} spooled chat messages from {}", messages.size(), path.toAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to replay spooled chat messages from {}", replaying.toAbsolutePath(), e);
+        }
+    }
+    
+    private static ChatMessage fromSpool(JsonNode node) {
+        ChatSession chatSession = new ChatSession();
+        chatSession.setId(node.get("chatSessionId").asLong());
+        ChatMessage message = new ChatMessage(chatSession, node.get("content").asText(),
+                MessageSenderType.valueOf(node.get("senderType").asText()));
+        message.setId(node.get("id").asLong());
+        message.setCreatedAt(LocalDateTime.parse(node.get("createdAt").asText()));
+        return message;
+    }
+}
@@ -5,23 +5,38 @@ import com.booking.entity.ChatSession;
 import com.booking.entity.ChatStatus;
 import com.booking.entity.MessageSenderType;
 import com.booking.entity.User;
+import com.booking.payload.request.PageCursor;
+import com.booking.payload.response.ChatMessageResponse;
+import com.booking.payload.response.ChatSessionResponse;
 import com.booking.repository.ChatMessageRepository;
 import com.booking.repository.ChatSessionRepository;
+import com.booking.repository.ListingVersion;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 @Service
 @Transactional
@@ -33,19 +48,60 @@ public class ChatService {
     @Autowired
     private ChatMessageRepository chatMessageRepository;
     
+    @Autowired
+    private IdAllocator idAllocator;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private ChatDispatcher chatDispatcher;
+    
+    @Autowired
+    private ChatHistoryCache chatHistoryCache;
+    
+    @Autowired
+    private ChatMessageWriteBehind chatMessageWriteBehind;
+    
+    @Autowired
+    @Qualifier("aiExecutor")
+    private AsyncTaskExecutor aiExecutor;
+    
+    @Autowired
+    @Qualifier("aiRestTemplate")
+    private RestTemplate restTemplate;
+    
+    @Autowired
+    private AiCircuitBreaker aiCircuitBreaker;
+    
+    @Autowired
+    private AiResponseCache aiResponseCache;
+    
     @Value("${ai.backend-url}")
     private String aiBackendUrl;
     
-    private final RestTemplate restTemplate = new RestTemplate();
+    private static final int STREAM_BUFFER_SIZE = 256;
+    
+    private static final String FALLBACK_RESPONSE = "I apologize, but I'm currently experiencing technical difficulties. Please try again later or contact our support team.";
     
+    // Each insert attempt runs in its own transaction, see IdAllocator.insertWithFreshId
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ChatSession createChatSession(User user) {
-        String reportId = generateUniqueReportId();
-        ChatSession chatSession = new ChatSession(reportId, user);
-        return chatSessionRepository.save(chatSession);
+        return idAllocator.insertWithFreshId(idAllocator::nextReportId,
+                reportId -> chatSessionRepository.save(new ChatSession(reportId, user)));
     }
     
-    public List<ChatSession> getUserChatSessions(User user) {
-        return chatSessionRepository.findByUser(user);
+    /**
+     * One keyset page of a user's chat sessions, newest first. Pass the cursor of the last row
+     * of the previous page, or null for the first page.
+     */
+    @Transactional(readOnly = true)
+    public List<ChatSessionResponse> getUserChatSessionsPage(Long userId, PageCursor cursor, int limit) {
+        PageRequest page = PageRequest.ofSize(limit);
+        if (cursor == null) {
+            return chatSessionRepository.findFirstPageByUserId(userId, page);
+        }
+        return chatSessionRepository.findPageByUserIdBefore(userId, cursor.getTimestamp(), cursor.getId(), page);
     }
     
     public List<ChatSession> getUserChatSessionsByStatus(User user, ChatStatus status) {
@@ -62,44 +118,197 @@ public class ChatService {
     
     public ChatMessage addMessage(ChatSession chatSession, String content, MessageSenderType senderType) {
         ChatMessage message = new ChatMessage(chatSession, content, senderType);
-        return chatMessageRepository.save(message);
+        return saveMessage(message);
     }
     
     public List<ChatMessage> getChatMessages(ChatSession chatSession) {
-        return chatMessageRepository.findByChatSessionOrderByCreatedAtAsc(chatSession);
+        return chatMessageWriteBehind.readThrough(chatSession.getId(), 0,
+                () -> chatMessageRepository.findByChatSessionOrderByCreatedAtAsc(chatSession));
+    }
+    
+    /**
+     * The session's messages with an id above {@code afterId}, in id order.
+     */
+    @Transactional(readOnly = true)
+    public List<ChatMessage> getChatMessagesAfter(ChatSession chatSession, Long afterId) {
+        return chatMessageWriteBehind.readThrough(chatSession.getId(), afterId,
+                () -> chatMessageRepository.findByChatSessionIdAndIdGreaterThanOrderByIdAsc(chatSession.getId(), afterId));
+    }
+    
+    @Transactional(readOnly = true)
+    public Optional<Long> findChatSessionId(String reportId, Long userId) {
+        return chatSessionRepository.findIdByReportIdAndUserId(reportId, userId);
+    }
+    
+    /**
+     * Version of the session's message list, or empty if the session is not the user's. Loads
+     * neither the session nor its messages.
+     */
+    @Transactional(readOnly = true)
+    public Optional<ListingVersion> getChatMessagesVersion(String reportId, Long userId) {
+        return chatSessionRepository.findIdByReportIdAndUserId(reportId, userId)
+                .map(chatSessionId -> chatMessageWriteBehind.readThrough(chatSessionId,
+                        () -> chatMessageRepository.findListingVersionByChatSessionId(chatSessionId)));
     }
     
     public List<ChatMessage> getChatMessagesBySenderType(ChatSession chatSession, MessageSenderType senderType) {
         return chatMessageRepository.findByChatSessionAndSenderType(chatSession, senderType);
     }
     
-    public String getAIResponse(String userMessage, String reportId) {
-        try {
-            // Prepare request to AI backend
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("message", userMessage);
-            requestBody.put("report_id", reportId);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-            
-            // Call AI backend
-            ResponseEntity<Map> response = restTemplate.postForEntity(
-                aiBackendUrl + "/chat", request, Map.class);
-            
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                return (String) response.getBody().get("response");
+    /**
+     * Stores the user's message and the AI answer to it once every message sent earlier in the
+     * same session has been answered, so a session's messages never interleave. Fails with
+     * {@link ChatDispatcher.QueueFullException} when the session has too many messages waiting.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<ChatMessage> sendMessage(ChatSession chatSession, String content) {
+        return chatDispatcher.submit(chatSession.getReportId(), () -> {
+            // Context is what came before this message; the backend appends the message itself
+            List<Map<String, String>> history = chatHistoryCache.recent(chatSession);
+            return replyAsync(chatSession, content, history);
+        });
+    }
+    
+    /**
+     * Streaming variant of {@link #sendMessage}, ordered the same way.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<ChatMessage> sendMessageStreaming(ChatSession chatSession, String content,
+                                                               Consumer<String> onChunk) {
+        return chatDispatcher.submit(chatSession.getReportId(), () -> {
+            List<Map<String, String>> history = chatHistoryCache.recent(chatSession);
+            return streamReplyAsync(chatSession, content, history, onChunk);
+        });
+    }
+    
+    /**
+     * Calls the AI backend on the AI executor and persists the user's message and the answer in
+     * short transactions of their own, so no servlet thread or JDBC connection is held while the
+     * backend is working. Throws {@link java.util.concurrent.RejectedExecutionException} when the
+     * executor is saturated, before anything is stored.
+     */
+    private CompletableFuture<ChatMessage> replyAsync(ChatSession chatSession, String userMessage,
+                                                      List<Map<String, String>> history) {
+        String cacheKey = cacheKeyFor(userMessage, history);
+        String cached = cacheKey != null ? aiResponseCache.get(cacheKey) : null;
+        if (cached != null) {
+            return storeExchange(chatSession, userMessage, CompletableFuture.completedFuture(cached));
+        }
+        
+        CompletableFuture<String> answer = CompletableFuture
+                .supplyAsync(() -> getAIResponse(userMessage, chatSession.getReportId(), history, cacheKey),
+                        aiExecutor);
+        return storeExchange(chatSession, userMessage, answer);
+    }
+    
+    /**
+     * Streams the AI answer from the backend on the AI executor, handing each chunk to
+     * {@code onChunk} as it arrives. The full text is persisted as one message once the stream
+     * ends; if the consumer fails (e.g. the client went away) the stream is still drained so
+     * the stored answer is complete.
+     */
+    private CompletableFuture<ChatMessage> streamReplyAsync(ChatSession chatSession, String userMessage,
+                                                            List<Map<String, String>> history, Consumer<String> onChunk) {
+        CompletableFuture<String> answer = CompletableFuture
+                .supplyAsync(() -> streamAIResponse(userMessage, chatSession.getReportId(), history, onChunk),
+                        aiExecutor);
+        return storeExchange(chatSession, userMessage, answer);
+    }
+    
+    // The user message is stored only once the AI call has been accepted, so a rejected send leaves
+    // nothing behind for the client's retry to duplicate; the answer is stored after it in any case
+    private CompletableFuture<ChatMessage> storeExchange(ChatSession chatSession, String userMessage,
+                                                         CompletableFuture<String> answer) {
+        addMessage(chatSession, userMessage, MessageSenderType.USER);
+        return answer.thenApply(aiResponse -> saveMessage(
+                new ChatMessage(chatSession, aiResponse, MessageSenderType.AI)));
+    }
+    
+    // Only reached on a cache miss; the caller has already looked the key up
+    private String getAIResponse(String userMessage, String reportId, List<Map<String, String>> history,
+                                 String cacheKey) {
+        // Fallback response when the backend fails or the circuit breaker rejects the call
+        String response = aiCircuitBreaker.execute(() -> callAIBackend(userMessage, reportId, history),
+                () -> FALLBACK_RESPONSE);
+        if (cacheKey != null && !FALLBACK_RESPONSE.equals(response)) {
+            aiResponseCache.put(cacheKey, response);
+        }
+        return response;
+    }
+    
+    private String callAIBackend(String userMessage, String reportId, List<Map<String, String>> history) {
+        // Call AI backend
+        ResponseEntity<Map> response = restTemplate.postForEntity(
+            aiBackendUrl + "/chat", buildAIRequest(userMessage, reportId, history), Map.class);
+        
+        if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+            throw new IllegalStateException("AI backend returned " + response.getStatusCode());
+        }
+        return (String) response.getBody().get("response");
+    }
+    
+    private String streamAIResponse(String userMessage, String reportId, List<Map<String, String>> history,
+                                    Consumer<String> onChunk) {
+        StringBuilder answer = new StringBuilder();
+        AtomicBoolean forwarding = new AtomicBoolean(true);
+        Consumer<String> relay = chunk -> {
+            answer.append(chunk);
+            if (forwarding.get()) {
+                try {
+                    onChunk.accept(chunk);
+                } catch (RuntimeException e) {
+                    forwarding.set(false);
+                }
             }
-            
-        } catch (Exception e) {
-            // Log error and return fallback response
-            System.err.println("Error calling AI backend: " + e.getMessage());
+        };
+        
+        String cacheKey = cacheKeyFor(userMessage, history);
+        String cached = cacheKey != null ? aiResponseCache.get(cacheKey) : null;
+        if (cached != null) {
+            relay.accept(cached);
+            return cached;
         }
         
-        // Fallback response
-        return "I apologize, but I'm currently experiencing technical difficulties. Please try again later or contact our support team.";
+        boolean completed = aiCircuitBreaker.execute(() -> restTemplate.execute(aiBackendUrl + "/chat/stream", HttpMethod.POST,
+                restTemplate.httpEntityCallback(buildAIRequest(userMessage, reportId, history)),
+                response -> {
+                    Reader reader = new InputStreamReader(response.getBody(), StandardCharsets.UTF_8);
+                    char[] buffer = new char[STREAM_BUFFER_SIZE];
+                    int read;
+                    while ((read = reader.read(buffer)) != -1) {
+                        relay.accept(new String(buffer, 0, read));
+                    }
+                    return true;
+                }), () -> false);
+        
+        if (answer.length() == 0) {
+            relay.accept(FALLBACK_RESPONSE);
+            return FALLBACK_RESPONSE;
+        }
+        if (completed && cacheKey != null) {
+            aiResponseCache.put(cacheKey, answer.toString());
+        }
+        return answer.toString();
+    }
+    
+    // An answer given in the middle of a conversation depends on what came before it, so only
+    // opening questions are shared between sessions
+    private String cacheKeyFor(String userMessage, List<Map<String, String>> history) {
+        return history.isEmpty() ? aiResponseCache.keyFor(userMessage) : null;
+    }
+    
+    private HttpEntity<Map<String, Object>> buildAIRequest(String userMessage, String reportId,
+                                                           List<Map<String, String>> history) {
+        // Prepare request to AI backend
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("message", userMessage);
+        requestBody.put("report_id", reportId);
+        requestBody.put("conversation_history", history);
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        
+        return new HttpEntity<>(requestBody, headers);
     }
     
     public void closeChatSession(String reportId) {
@@ -108,6 +317,7 @@ public class ChatService {
             ChatSession chatSession = chatSessionOpt.get();
             chatSession.setStatus(ChatStatus.CLOSED);
             chatSessionRepository.save(chatSession);
+            eventPublisher.publishEvent(new ChatSessionStatusChangedEvent(new ChatSessionResponse(chatSession)));
         }
     }
     
@@ -117,20 +327,17 @@ public class ChatService {
             ChatSession chatSession = chatSessionOpt.get();
             chatSession.setStatus(ChatStatus.ESCALATED);
             chatSessionRepository.save(chatSession);
+            eventPublisher.publishEvent(new ChatSessionStatusChangedEvent(new ChatSessionResponse(chatSession)));
         }
     }
     
-    private String generateUniqueReportId() {
-        String reportId;
-        do {
-            reportId = generateRandomReportId();
-        } while (chatSessionRepository.findByReportId(reportId).isPresent());
-        
-        return reportId;
-    }
-    
-    private String generateRandomReportId() {
-        Random random = new Random();
-        return String.format("%07d", random.nextInt(10000000));
+    // Every stored message goes through here so long polls and subscribers of the session hear of it once it commits
+    private ChatMessage saveMessage(ChatMessage message) {
+        ChatMessage saved = chatMessageWriteBehind.isEnabled()
+                ? chatMessageWriteBehind.enqueue(message)
+                : chatMessageRepository.save(message);
+        eventPublisher.publishEvent(new ChatMessageAddedEvent(saved.getChatSession().getReportId(),
+                new ChatMessageResponse(saved)));
+        return saved;
     }
 }
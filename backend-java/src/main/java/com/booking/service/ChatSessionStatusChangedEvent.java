@@ -0,0 +1,19 @@
+package com.booking.service;
+
+import com.booking.payload.response.ChatSessionResponse;
+
+/**
+ * Published by {@link ChatService} when a chat session is closed or escalated.
+ */
+public class ChatSessionStatusChangedEvent {
+    
+    private final ChatSessionResponse chatSession;
+    
+    public ChatSessionStatusChangedEvent(ChatSessionResponse chatSession) {
+        this.chatSession = chatSession;
+    }
+    
+    public ChatSessionResponse getChatSession() {
+        return chatSession;
+    }
+}
@@ -0,0 +1,59 @@
+package com.booking.service;
+
+/**
+ * Keyed bijection on [0, domainSize). A balanced Feistel network over the smallest even bit
+ * width covering the domain, with cycle-walking for values that land outside it. Distinct
+ * inputs always map to distinct outputs, so permuting a counter yields unique but
+ * non-sequential identifiers.
+ */
+final class FeistelPermutation {
+    
+    private static final int ROUNDS = 4;
+    
+    private final long domainSize;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+    
+    FeistelPermutation(long domainSize, long key) {
+        this.domainSize = domainSize;
+        int bits = 64 - Long.numberOfLeadingZeros(domainSize - 1);
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        
+        long state = key;
+        for (int i = 0; i < ROUNDS; i++) {
+            state = mix(state + 0x9E3779B97F4A7C15L);
+            roundKeys[i] = state;
+        }
+    }
+    
+    long permute(long value) {
+        if (value < 0 || value >= domainSize) {
+            throw new IllegalArgumentException("Value outside permutation domain: " + value);
+        }
+        
+        long result = value;
+        do {
+            result = encrypt(result);
+        } while (result >= domainSize);
+        return result;
+    }
+    
+    private long encrypt(long value) {
+        long left = (value >>> halfBits) & halfMask;
+        long right = value & halfMask;
+        for (long roundKey : roundKeys) {
+            long next = left ^ (mix(right ^ roundKey) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+    
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,149 @@
+package com.booking.service;
+
+import com.booking.entity.Booking;
+import com.booking.entity.IdSequence;
+import com.booking.repository.IdSequenceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Hands out identifiers that are unique by construction, without lookup queries. Each node
+ * reserves blocks of counter values from the id_sequences table under a row lock, so nodes
+ * never share a value; public-facing ids are a keyed permutation of the counter so they
+ * are not guessable from one another.
+ */
+@Service
+public class IdAllocator {
+    
+    public static final String REPORT_ID_SEQUENCE = "report_id";
+    public static final String CUSTOMER_SUPPORT_ID_SEQUENCE = "customer_support_id";
+    
+    private static final long REPORT_ID_DOMAIN = 10_000_000L;
+    private static final long CUSTOMER_SUPPORT_ID_DOMAIN = 1L << 32;
+    
+    private static final int INSERT_ATTEMPTS = 3;
+    
+    @Autowired
+    private IdSequenceRepository idSequenceRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${ids.block-size:100}")
+    private int blockSize;
+    
+    @Value("${ids.permutation-key:0}")
+    private long permutationKey;
+    
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    
+    private TransactionTemplate reservationTransaction;
+    
+    private TransactionTemplate insertTransaction;
+    
+    private FeistelPermutation reportIdPermutation;
+    
+    private FeistelPermutation customerSupportIdPermutation;
+    
+    @PostConstruct
+    public void init() {
+        if (permutationKey == 0) {
+            // With the default key every deployment hands out the same, predictable id order
+            throw new IllegalStateException("ids.permutation-key (ID_PERMUTATION_KEY) must be set to a random, "
+                    + "non-zero 64-bit value, the same on every node");
+        }
+        reservationTransaction = new TransactionTemplate(transactionManager);
+        reservationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        insertTransaction = new TransactionTemplate(transactionManager);
+        
+        // Hibernate would start a missing booking sequence at 1, below ids the table already holds,
+        // e.g. on a database created by ddl-auto rather than schema.sql
+        reservationTransaction.executeWithoutResult(status -> {
+            idSequenceRepository.createIfMissing(Booking.ID_SEQUENCE, 0L);
+            idSequenceRepository.raiseAboveBookingIds(Booking.ID_SEQUENCE, Booking.ID_ALLOCATION_SIZE);
+        });
+        
+        reportIdPermutation = new FeistelPermutation(REPORT_ID_DOMAIN, permutationKey);
+        customerSupportIdPermutation = new FeistelPermutation(CUSTOMER_SUPPORT_ID_DOMAIN, ~permutationKey);
+    }
+    
+    public String nextReportId() {
+        long counter = nextValue(REPORT_ID_SEQUENCE);
+        if (counter >= REPORT_ID_DOMAIN) {
+            throw new IllegalStateException("Report id space exhausted");
+        }
+        return String.format("%07d", reportIdPermutation.permute(counter));
+    }
+    
+    public String nextCustomerSupportId() {
+        long counter = nextValue(CUSTOMER_SUPPORT_ID_SEQUENCE);
+        if (counter >= CUSTOMER_SUPPORT_ID_DOMAIN) {
+            throw new IllegalStateException("Customer support id space exhausted");
+        }
+        return String.format("%08X", customerSupportIdPermutation.permute(counter));
+    }
+    
+    /**
+     * Inserts a row keyed by a fresh id from {@code nextId}, each attempt in its own transaction.
+     * Allocated ids never clash with one another, only with the random ids stored before the
+     * allocator existed; the unique constraint catches that rare case and the insert is retried
+     * with the next id. Callers must not already be in a transaction.
+     */
+    public <T> T insertWithFreshId(Supplier<String> nextId, Function<String, T> insert) {
+        for (int attempt = 1; ; attempt++) {
+            String id = nextId.get();
+            try {
+                return insertTransaction.execute(status -> insert.apply(id));
+            } catch (DataIntegrityViolationException e) {
+                // A clash on another constraint fails every attempt the same way and surfaces here
+                if (attempt >= INSERT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Next raw counter value for a sequence. Values are unique across nodes and increase
+     * within a node, but blocks reserved by different nodes interleave.
+     */
+    public long nextValue(String sequenceName) {
+        Block block = blocks.computeIfAbsent(sequenceName, name -> new Block());
+        synchronized (block) {
+            if (block.next >= block.limit) {
+                long start = reserveBlock(sequenceName);
+                block.next = start;
+                block.limit = start + blockSize;
+            }
+            return block.next++;
+        }
+    }
+    
+    private long reserveBlock(String sequenceName) {
+        return reservationTransaction.execute(status -> {
+            idSequenceRepository.createIfMissing(sequenceName, 0L);
+            IdSequence sequence = idSequenceRepository.findForUpdate(sequenceName)
+                    .orElseThrow(() -> new IllegalStateException("Missing id sequence: " + sequenceName));
+            long start = sequence.getNextVal();
+            sequence.setNextVal(start + blockSize);
+            return start;
+        });
+    }
+    
+    private static class Block {
+        
+        private long next;
+        private long limit;
+    }
+}
@@ -25,11 +25,8 @@ public class StripeService {
     }
     
     public PaymentIntent createPaymentIntent(BigDecimal amount, String currency, String description) throws StripeException {
-        // Convert BigDecimal to cents (Stripe uses smallest currency unit)
-        long amountInCents = amount.multiply(new BigDecimal("100")).longValue();
-        
         PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
-                .setAmount(amountInCents)
+                .setAmount(toMinorUnits(amount))
                 .setCurrency(currency)
                 .setDescription(description)
                 .setAutomaticPaymentMethods(
@@ -42,6 +39,11 @@ public class StripeService {
         return PaymentIntent.create(params);
     }
     
+    // Convert BigDecimal to cents (Stripe uses smallest currency unit)
+    public long toMinorUnits(BigDecimal amount) {
+        return amount.multiply(new BigDecimal("100")).longValue();
+    }
+    
     public PaymentIntent confirmPaymentIntent(String paymentIntentId) throws StripeException {
         PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
         return paymentIntent.confirm();
@@ -0,0 +1,112 @@
+package com.booking.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical timing wheel of ids with deadlines. Level {@code n} has {@code wheelSize}
+ * buckets spanning {@code wheelSize^n} ticks each; a timer sits on the lowest level whose
+ * range covers its delay and cascades one level down each time that level's cursor wraps.
+ * Adding, cancelling and advancing one tick are O(1), independent of how many timers are set.
+ * Not thread-safe.
+ */
+final class TimerWheel {
+    
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<List<Set<Long>>> levels = new ArrayList<>();
+    private final Map<Long, Long> deadlineTicks = new HashMap<>();
+    private final Map<Long, Set<Long>> buckets = new HashMap<>();
+    private long currentTick;
+    
+    TimerWheel(long tickMillis, int wheelSize, int levelCount, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTick = nowMillis / tickMillis;
+        for (int level = 0; level < levelCount; level++) {
+            List<Set<Long>> wheel = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                wheel.add(new HashSet<>());
+            }
+            levels.add(wheel);
+        }
+    }
+    
+    /**
+     * Sets or replaces the timer for {@code id}. Timers never fire before their deadline; one
+     * at or before the current tick fires on the next {@link #advance}.
+     */
+    void schedule(Long id, long deadlineMillis) {
+        cancel(id);
+        long deadlineTick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, currentTick + 1);
+        deadlineTicks.put(id, deadlineTick);
+        place(id, deadlineTick);
+    }
+    
+    void cancel(Long id) {
+        Set<Long> bucket = buckets.remove(id);
+        if (bucket != null) {
+            bucket.remove(id);
+            deadlineTicks.remove(id);
+        }
+    }
+    
+    int size() {
+        return deadlineTicks.size();
+    }
+    
+    /**
+     * Advances the wheel to {@code nowMillis} and returns the ids whose deadline has passed.
+     */
+    List<Long> advance(long nowMillis) {
+        List<Long> expired = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            
+            Set<Long> due = levels.get(0).get((int) (currentTick % wheelSize));
+            for (Long id : due) {
+                buckets.remove(id);
+                deadlineTicks.remove(id);
+                expired.add(id);
+            }
+            due.clear();
+        }
+        return expired;
+    }
+    
+    // Moves timers from each higher level whose cursor just moved one bucket down to where they now belong
+    private void cascade() {
+        long span = 1;
+        for (int level = 1; level < levels.size(); level++) {
+            span *= wheelSize;
+            if (currentTick % span != 0) {
+                return;
+            }
+            Set<Long> bucket = levels.get(level).get((int) ((currentTick / span) % wheelSize));
+            List<Long> moving = new ArrayList<>(bucket);
+            bucket.clear();
+            for (Long id : moving) {
+                place(id, deadlineTicks.get(id));
+            }
+        }
+    }
+    
+    private void place(Long id, long deadlineTick) {
+        long delay = deadlineTick - currentTick;
+        int level = 0;
+        long span = 1;
+        while (level < levels.size() - 1 && delay >= span * wheelSize) {
+            level++;
+            span *= wheelSize;
+        }
+        Set<Long> bucket = levels.get(level).get((int) ((deadlineTick / span) % wheelSize));
+        bucket.add(id);
+        buckets.put(id, bucket);
+    }
+}
@@ -3,14 +3,17 @@ package com.booking.service;
 import com.booking.entity.Role;
 import com.booking.entity.User;
 import com.booking.repository.UserRepository;
+import com.booking.security.PrincipalCache;
+import com.booking.security.TokenVersionCache;
+import com.booking.security.VerifiedTokenCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 
 @Service
 @Transactional
@@ -22,18 +25,35 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private IdAllocator idAllocator;
+    
+    @Autowired
+    private PrincipalCache principalCache;
+    
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+    
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+    
+    // Each insert attempt runs in its own transaction, see IdAllocator.insertWithFreshId
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public User createUser(String username, String email, String password, 
                           String firstName, String lastName, Role role) {
-        User user = new User();
-        user.setUsername(username);
-        user.setEmail(email);
-        user.setPassword(passwordEncoder.encode(password));
-        user.setFirstName(firstName);
-        user.setLastName(lastName);
-        user.setRole(role);
-        user.setCustomerSupportId(generateCustomerSupportId());
-        
-        return userRepository.save(user);
+        String encodedPassword = passwordEncoder.encode(password);
+        return idAllocator.insertWithFreshId(idAllocator::nextCustomerSupportId, customerSupportId -> {
+            User user = new User();
+            user.setUsername(username);
+            user.setEmail(email);
+            user.setPassword(encodedPassword);
+            user.setFirstName(firstName);
+            user.setLastName(lastName);
+            user.setRole(role);
+            user.setCustomerSupportId(customerSupportId);
+            
+            return userRepository.save(user);
+        });
     }
     
     public Optional<User> findByUsername(String username) {
@@ -57,11 +77,23 @@ public class UserService {
     }
     
     public User updateUser(User user) {
-        return userRepository.save(user);
+        // Any change to the account invalidates stateless tokens carrying the old claims
+        Long tokenVersion = user.getTokenVersion() != null ? user.getTokenVersion() : 0L;
+        user.setTokenVersion(tokenVersion + 1);
+        
+        User saved = userRepository.save(user);
+        principalCache.invalidate(saved.getId(), saved.getUsername());
+        tokenVersionCache.invalidate(saved.getId());
+        verifiedTokenCache.invalidateUser(saved.getId());
+        return saved;
     }
     
     public void deleteUser(Long id) {
+        String username = userRepository.findById(id).map(User::getUsername).orElse(null);
         userRepository.deleteById(id);
+        principalCache.invalidate(id, username);
+        tokenVersionCache.invalidate(id);
+        verifiedTokenCache.invalidateUser(id);
     }
     
     public boolean existsByUsername(String username) {
@@ -71,13 +103,4 @@ public class UserService {
     public boolean existsByEmail(String email) {
         return userRepository.existsByEmail(email);
     }
-    
-    private String generateCustomerSupportId() {
-        String customerSupportId;
-        do {
-            customerSupportId = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        } while (userRepository.findByCustomerSupportId(customerSupportId).isPresent());
-        
-        return customerSupportId;
-    }
 }
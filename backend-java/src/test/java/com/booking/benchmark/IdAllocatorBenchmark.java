@@ -0,0 +1,148 @@
+package com.booking.benchmark;
+
+import com.booking.entity.IdSequence;
+import com.booking.repository.IdSequenceRepository;
+import com.booking.service.IdAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Throughput of {@link IdAllocator}: the per-sequence lock, and one block reservation in a
+ * REQUIRES_NEW transaction every {@code blockSize} ids. The id_sequences table is replaced by
+ * an in-memory map and each reservation's commit waits {@code reservationMicros}, standing in
+ * for the database round trips, so the numbers show how block size amortises that cost with
+ * one and with several threads. A block size of 1 approximates a query per id.
+ *
+ * <p>Run with:
+ * <pre>
+ * mvn -B test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main IdAllocatorBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdAllocatorBenchmark {
+    
+    private static final String SEQUENCE = "benchmark";
+    
+    @Param({"1", "100", "1000"})
+    private int blockSize;
+    
+    @Param({"0", "500"})
+    private long reservationMicros;
+    
+    private IdAllocator idAllocator;
+    
+    // A fresh allocator per iteration keeps the counters far from the end of the id spaces
+    @Setup(Level.Iteration)
+    public void setUp() {
+        idAllocator = new IdAllocator();
+        ReflectionTestUtils.setField(idAllocator, "idSequenceRepository", inMemorySequences());
+        ReflectionTestUtils.setField(idAllocator, "transactionManager",
+                new SimulatedTransactionManager(TimeUnit.MICROSECONDS.toNanos(reservationMicros)));
+        ReflectionTestUtils.setField(idAllocator, "blockSize", blockSize);
+        ReflectionTestUtils.setField(idAllocator, "permutationKey", 0x5DEECE66DL);
+        idAllocator.init();
+    }
+    
+    @Benchmark
+    public long nextValue() {
+        return idAllocator.nextValue(SEQUENCE);
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public long nextValueContended() {
+        return idAllocator.nextValue(SEQUENCE);
+    }
+    
+    @Benchmark
+    public String nextCustomerSupportId() {
+        return idAllocator.nextCustomerSupportId();
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public String nextCustomerSupportIdContended() {
+        return idAllocator.nextCustomerSupportId();
+    }
+    
+    // Implements the repository calls IdAllocator makes; findForUpdate hands out the stored row like a managed entity
+    private static IdSequenceRepository inMemorySequences() {
+        Map<String, IdSequence> sequences = new ConcurrentHashMap<>();
+        return (IdSequenceRepository) Proxy.newProxyInstance(IdSequenceRepository.class.getClassLoader(),
+                new Class<?>[] {IdSequenceRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createIfMissing":
+                            return sequences.putIfAbsent((String) args[0], new IdSequence((String) args[0], (Long) args[1])) == null ? 1 : 0;
+                        case "raiseAboveBookingIds":
+                            return 0;
+                        case "findForUpdate":
+                            return Optional.ofNullable(sequences.get((String) args[0]));
+                        case "toString":
+                            return "InMemoryIdSequenceRepository";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+    
+    private static class SimulatedTransactionManager extends AbstractPlatformTransactionManager {
+        
+        private final long commitNanos;
+        
+        SimulatedTransactionManager(long commitNanos) {
+            this.commitNanos = commitNanos;
+        }
+        
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+        
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+        
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            if (commitNanos > 0) {
+                LockSupport.parkNanos(commitNanos);
+            }
+        }
+        
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
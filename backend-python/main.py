@@ -1,5 +1,6 @@
 from fastapi import FastAPI, HTTPException, Depends, status
 from fastapi.middleware.cors import CORSMiddleware
+from fastapi.responses import StreamingResponse
 from fastapi.security import HTTPBearer, HTTPAuthorizationCredentials
 from pydantic import BaseModel
 from typing import Optional, List
@@ -98,6 +99,42 @@ async def chat_with_ai(
             detail="Internal server error"
         )
 
+@app.post("/chat/stream")
+async def stream_chat_with_ai(
+    request: ChatRequest,
+    credentials: HTTPAuthorizationCredentials = Depends(security)
+):
+    """
+    Chat with AI chatbot, streaming the response as plain text chunks
+    """
+    user_data = verify_token(credentials.credentials)
+    if not user_data:
+        raise HTTPException(
+            status_code=status.HTTP_401_UNAUTHORIZED,
+            detail="Invalid authentication credentials"
+        )
+    
+    async def generate():
+        chunks = []
+        async for chunk in ai_service.stream_response(
+            message=request.message,
+            report_id=request.report_id,
+            user_id=user_data.get("user_id"),
+            conversation_history=request.conversation_history
+        ):
+            chunks.append(chunk)
+            yield chunk
+        
+        # Store conversation in database once the full response is known
+        await database_service.store_conversation(
+            report_id=request.report_id,
+            user_id=user_data.get("user_id"),
+            user_message=request.message,
+            ai_response="".join(chunks)
+        )
+    
+    return StreamingResponse(generate(), media_type="text/plain; charset=utf-8")
+
 @app.post("/voice/convert", response_model=VoiceResponse)
 async def convert_text_to_speech(
     request: VoiceRequest,
@@ -62,6 +62,51 @@ class AIService:
         # Final fallback
         return self._get_fallback_response()
     
+    async def stream_response(self, message: str, report_id: str, user_id: Optional[int] = None,
+                              conversation_history: Optional[List[Dict[str, str]]] = None):
+        """
+        Stream AI response chunks as they are generated, falling back to a single chunk
+        if the stream fails before producing anything
+        """
+        streamed = False
+        try:
+            messages = [{"role": "system", "content": self.system_prompt}]
+            
+            if conversation_history:
+                for msg in conversation_history:
+                    messages.append({
+                        "role": msg.get("role", "user"),
+                        "content": msg.get("content", "")
+                    })
+            
+            messages.append({"role": "user", "content": message})
+            
+            stream = await openai.ChatCompletion.acreate(
+                model="gpt-3.5-turbo",
+                messages=messages,
+                max_tokens=500,
+                temperature=0.7,
+                stream=True
+            )
+            
+            async for chunk in stream:
+                content = chunk.choices[0].delta.get("content")
+                if content:
+                    streamed = True
+                    yield content
+            return
+            
+        except Exception as e:
+            logger.warning(f"ChatGPT streaming failed: {str(e)}")
+            if streamed:
+                # Part of the answer is already out; appending a second full answer would garble it.
+                # Re-raising aborts the response so callers don't treat the partial answer as complete
+                yield "\n\n[Sorry, this response was interrupted. Please try again.]"
+                raise
+        
+        # Fall back to the non-streaming chain (Gemini, then canned response)
+        yield await self.get_response(message, report_id, user_id, conversation_history)
+    
     async def _get_chatgpt_response(self, message: str, conversation_history: Optional[List[Dict[str, str]]] = None) -> Optional[str]:
         """
         Get response from ChatGPT
@@ -19,6 +19,10 @@ class DatabaseService:
             'charset': 'utf8mb4',
             'autocommit': True
         }
+        
+        # With write-behind on, the Java backend assigns chat message ids itself and stores both
+        # sides of the conversation; AUTO_INCREMENT inserts from here could take those ids
+        self.store_chat_messages = os.getenv('CHAT_WRITE_BEHIND', 'false').lower() != 'true'
     
     @asynccontextmanager
     async def get_connection(self):
@@ -41,6 +45,9 @@ class DatabaseService:
         """
         Store conversation in database
         """
+        if not self.store_chat_messages:
+            return True
+        
         try:
             async with self.get_connection() as conn:
                 cursor = conn.cursor()
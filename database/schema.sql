@@ -17,6 +17,7 @@ CREATE TABLE users (
     is_enabled BOOLEAN DEFAULT TRUE,
     is_account_non_locked BOOLEAN DEFAULT TRUE,
     is_credentials_non_expired BOOLEAN DEFAULT TRUE,
+    token_version BIGINT NOT NULL DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     INDEX idx_username (username),
@@ -37,8 +38,10 @@ CREATE TABLE bookings (
     status ENUM('PENDING', 'CONFIRMED', 'CANCELLED', 'COMPLETED', 'RESCHEDULED') DEFAULT 'CONFIRMED',
     notes TEXT,
     stripe_payment_intent_id VARCHAR(100),
+    hold_expires_at TIMESTAMP NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    -- Microsecond precision: the bookings listing ETag and delta sync must tell apart changes within one second
+    updated_at TIMESTAMP(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
     INDEX idx_user_id (user_id),
     INDEX idx_booking_date_time (booking_date_time),
@@ -46,6 +49,22 @@ CREATE TABLE bookings (
     INDEX idx_stripe_payment_intent_id (stripe_payment_intent_id)
 );
 
+-- Booking tombstones table (ids of deleted bookings, for delta sync)
+CREATE TABLE booking_tombstones (
+    booking_id BIGINT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    deleted_at TIMESTAMP(6) NOT NULL,
+    INDEX idx_user_deleted (user_id, deleted_at),
+    INDEX idx_deleted_at (deleted_at)
+);
+
+-- Revoked tokens table (digests of tokens signed out before they expire, shared by all nodes)
+CREATE TABLE revoked_tokens (
+    token_digest VARCHAR(64) PRIMARY KEY,
+    expires_at TIMESTAMP NOT NULL,
+    INDEX idx_expires_at (expires_at)
+);
+
 -- Chat sessions table
 CREATE TABLE chat_sessions (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -68,11 +87,23 @@ CREATE TABLE chat_messages (
     sender_type ENUM('USER', 'AI', 'ADMIN') NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (chat_session_id) REFERENCES chat_sessions(id) ON DELETE CASCADE,
-    INDEX idx_chat_session_id (chat_session_id),
+    INDEX idx_chat_session_id (chat_session_id, id),
     INDEX idx_sender_type (sender_type),
     INDEX idx_created_at (created_at)
 );
 
+-- Identifier sequences (block-reserved counters, see IdAllocator)
+CREATE TABLE id_sequences (
+    sequence_name VARCHAR(64) PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
+INSERT INTO id_sequences (sequence_name, next_val) VALUES ('report_id', 0), ('customer_support_id', 0);
+
+-- Booking ids come from a pooled table generator (allocation size 50), which hands out the 50 ids
+-- up to next_val; the application also raises it to MAX(id) + 50 on startup
+INSERT INTO id_sequences (sequence_name, next_val) SELECT 'bookings', COALESCE(MAX(id), 0) + 50 FROM bookings;
+
 -- Insert default admin user
 INSERT INTO users (username, email, password, first_name, last_name, role, customer_support_id) 
 VALUES ('admin', 'admin@booking.com', '$2a$10$N.zmdr9k7uOCQb376NoUnuTJ8iAt6Z5EHsM8lE9lBOsl7iKTVEFDi', 'Admin', 'User', 'ADMIN', 'ADMIN001');
@@ -81,3 +112,12 @@ VALUES ('admin', 'admin@booking.com', '$2a$10$N.zmdr9k7uOCQb376NoUnuTJ8iAt6Z5EHs
 CREATE INDEX idx_bookings_date_status ON bookings(booking_date_time, status);
 CREATE INDEX idx_chat_sessions_user_status ON chat_sessions(user_id, status);
 CREATE INDEX idx_chat_messages_session_created ON chat_messages(chat_session_id, created_at);
+CREATE INDEX idx_bookings_status_hold ON bookings(status, hold_expires_at);
+CREATE INDEX idx_bookings_status_date_id ON bookings(status, booking_date_time, id);
+CREATE INDEX idx_bookings_user_updated ON bookings(user_id, updated_at);
+CREATE INDEX idx_bookings_user_date_id ON bookings(user_id, booking_date_time, id);
+CREATE INDEX idx_chat_sessions_user_created_id ON chat_sessions(user_id, created_at, id);
+
+-- Upgrading a database created before booking change times had sub-second precision:
+-- ALTER TABLE bookings MODIFY updated_at TIMESTAMP(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
+-- ALTER TABLE booking_tombstones MODIFY deleted_at TIMESTAMP(6) NOT NULL;